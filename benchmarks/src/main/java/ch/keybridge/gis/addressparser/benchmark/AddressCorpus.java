@@ -0,0 +1,71 @@
+package ch.keybridge.gis.addressparser.benchmark;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Representative address corpora for the benchmarks. Each corpus exercises a
+ * different path through the parser.
+ *
+ * @author jesse
+ */
+public enum AddressCorpus {
+
+  /**
+   * Complete street addresses. These match the street address pattern.
+   */
+  STREET("1600 Tysons Blvd., Suite 1500, McLean, VA  22102",
+         "123 N Main St Apt 4B, Springfield, IL 62701-1234",
+         "100 First Street, San Francisco, California 94105",
+         "500 W Madison Street Suite 1000 Chicago IL 60661",
+         "700 E Pennsylvania Ave NW Washington DC 20003",
+         "3 Elm Court Bldg 7, St Louis, MO 63101",
+         "1 Infinite Loop Cupertino CA 95014",
+         "1234 Wheat Ridge Ave Wheat Ridge CO"),
+  /**
+   * Street intersections. These fail the street address pattern and fall
+   * through to the corner and intersection patterns.
+   */
+  INTERSECTION("Main St and Oak Ave, Springfield, IL 62701",
+               "Broadway & 42nd St, New York, NY 10036",
+               "5th Ave at E 59th St New York NY",
+               "N Central Ave @ W Van Buren St, Phoenix, AZ 85004"),
+  /**
+   * Post office box addresses.
+   */
+  PO_BOX("PO Box 123, Anytown, CA 90210",
+         "P.O. Box 55 Reno NV 89501",
+         "P. O. Box 4020, Fairbanks, AK 99708",
+         "Post Office Box 9, Ogden UT 84401"),
+  /**
+   * City, state and zip only. These fall through to the last line pattern.
+   */
+  CITY_STATE_ZIP("Springfield, IL 62701",
+                 "New York, NY 10001",
+                 "Chicago IL",
+                 "San Francisco, California 94105"),
+  /**
+   * Malformed or adversarial input.
+   */
+  MALFORMED("!!!###",
+            "the quick brown fox jumps over the lazy dog and then some more words at the end",
+            "12345 Northeast Southwest North South East West Blvd",
+            "9 Rue de Rivoli Paris",
+            "and at and at and at and at and at and at");
+
+  private final List<String> addresses;
+
+  private AddressCorpus(String... addresses) {
+    this.addresses = Collections.unmodifiableList(Arrays.asList(addresses));
+  }
+
+  /**
+   * Get the raw address strings in this corpus.
+   *
+   * @return a non-empty list of free-text addresses
+   */
+  public List<String> getAddresses() {
+    return addresses;
+  }
+}
@@ -0,0 +1,202 @@
+package ch.keybridge.gis.addressparser.benchmark;
+
+import ch.keybridge.gis.addressparser.Address;
+import ch.keybridge.gis.addressparser.AddressParser;
+import ch.keybridge.gis.addressparser.AddressRoute;
+import ch.keybridge.gis.addressparser.us.Formatter;
+import ch.keybridge.gis.addressparser.us.ParseSession;
+import ch.keybridge.gis.addressparser.us.Parser;
+import ch.keybridge.gis.addressparser.us.ParserEngine;
+import ch.keybridge.gis.addressparser.us.enumerated.AddressComponentKey;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Throughput benchmarks for each stage of the address parser.
+ * <p>
+ * Every benchmark method processes one address per operation, cycling through
+ * the selected corpus. Inputs for the later stages (normalize, format) are
+ * prepared once during setup so that each method measures only its own
+ * stage.
+ *
+ * @author jesse
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AddressParserBenchmark {
+
+  @Param({"STREET", "INTERSECTION", "PO_BOX", "CITY_STATE_ZIP", "MALFORMED"})
+  public AddressCorpus corpus;
+
+  private Parser parser;
+  private Parser tokenParser;
+  private Formatter formatter;
+  private AddressParser addressParser;
+
+  private String[] raw;
+  private Map<AddressComponentKey, String>[] parsed;
+  private Map<AddressComponentKey, String>[] normalized;
+  private Map<AddressComponentKey, String> target;
+  private Address[] addresses;
+  private Address[] foreignAddresses;
+  private Address[] formatted;
+  private int cursor;
+
+  @Setup
+  @SuppressWarnings("unchecked")
+  public void setup() throws Exception {
+    parser = new Parser();
+    tokenParser = new Parser(ParserEngine.TOKEN, null);
+    formatter = new Formatter();
+    addressParser = new AddressParser();
+
+    List<String> list = corpus.getAddresses();
+    int size = list.size();
+    raw = list.toArray(new String[size]);
+    parsed = new Map[size];
+    normalized = new Map[size];
+    addresses = new Address[size];
+    foreignAddresses = new Address[size];
+    formatted = new Address[size];
+    target = new EnumMap<>(AddressComponentKey.class);
+    for (int i = 0; i < size; i++) {
+      parsed[i] = parser.parse(raw[i]);
+      normalized[i] = formatter.normalizeParsedAddress(parsed[i]);
+      addresses[i] = Address.getInstance(raw[i], null, null, null, "US");
+      foreignAddresses[i] = Address.getInstance(raw[i], null, null, null, "CA");
+      formatted[i] = addressParser.parse(raw[i]);
+    }
+  }
+
+  /**
+   * Report how many addresses took each route through parseAddress. Only the
+   * parsed routes run the regex engine; the others are cleaned up in place.
+   */
+  @TearDown
+  public void tearDown() {
+    StringBuilder sb = new StringBuilder("parseAddress routes");
+    for (AddressRoute route : AddressRoute.values()) {
+      sb.append(' ').append(route).append('=').append(addressParser.getRouteCount(route));
+    }
+    System.out.println(sb);
+  }
+
+  /**
+   * Advance to the next address in the corpus.
+   *
+   * @return the index of the next address
+   */
+  private int next() {
+    int i = cursor;
+    cursor = i + 1 == raw.length ? 0 : i + 1;
+    return i;
+  }
+
+  /**
+   * Parse a free-text address into its components.
+   */
+  @Benchmark
+  public Map<AddressComponentKey, String> parse() throws Exception {
+    return parser.parse(raw[next()]);
+  }
+
+  /**
+   * Parse a free-text address into its components with the token engine.
+   */
+  @Benchmark
+  public Map<AddressComponentKey, String> parseTokenEngine() throws Exception {
+    return tokenParser.parse(raw[next()]);
+  }
+
+  /**
+   * Type an address one character at a time, parsing the text after every
+   * keystroke with an incremental session. Divide the score by the address
+   * length for the cost of a keystroke.
+   */
+  @Benchmark
+  public Map<AddressComponentKey, String> typeParseSession() {
+    String address = raw[next()];
+    ParseSession session = new ParseSession();
+    for (int i = 0; i < address.length(); i++) {
+      session.append(address.subSequence(i, i + 1));
+    }
+    return session.getResult();
+  }
+
+  /**
+   * Type an address one character at a time, re-parsing the whole text after
+   * every keystroke with the token engine. The baseline for
+   * {@link #typeParseSession()}.
+   */
+  @Benchmark
+  public Map<AddressComponentKey, String> typeParseTokenEngine() throws Exception {
+    String address = raw[next()];
+    Map<AddressComponentKey, String> result = null;
+    for (int i = 1; i <= address.length(); i++) {
+      result = tokenParser.parse(address.substring(0, i), false);
+    }
+    return result;
+  }
+
+  /**
+   * Normalize a parsed address component map.
+   */
+  @Benchmark
+  public Map<AddressComponentKey, String> normalizeParsedAddress() {
+    return formatter.normalizeParsedAddress(parsed[next()]);
+  }
+
+  /**
+   * Normalize a parsed address component map into a reused target map. With
+   * the gc profiler, gc.alloc.rate.norm shows the bytes allocated by the
+   * normalization itself.
+   */
+  @Benchmark
+  public Map<AddressComponentKey, String> normalizeParsedAddressReuse() {
+    return formatter.normalizeParsedAddress(parsed[next()], target);
+  }
+
+  /**
+   * Format a normalized address component map as a single line.
+   */
+  @Benchmark
+  public String toFormattedAddress() {
+    return formatter.toFormattedAddress(normalized[next()], true);
+  }
+
+  /**
+   * Clean up an Address object. The method edits its argument so each
+   * operation works on a fresh copy; the copy is included in the score.
+   */
+  @Benchmark
+  public Address parseAddress() throws Exception {
+    Address a = addresses[next()];
+    return addressParser.parseAddress(Address.getInstance(a.getStreet(), a.getCity(), a.getState(), a.getPostalCode(), a.getCountry()));
+  }
+
+  /**
+   * Clean up a non-US Address object. These always take the cheap path and
+   * are never parsed; compare with {@link #parseAddress()} to size the cost of
+   * the parsed route.
+   */
+  @Benchmark
+  public Address parseAddressNonUs() throws Exception {
+    Address a = foreignAddresses[next()];
+    return addressParser.parseAddress(Address.getInstance(a.getStreet(), a.getCity(), a.getState(), a.getPostalCode(), a.getCountry()));
+  }
+
+  /**
+   * Format a parsed Address as a single line.
+   */
+  @Benchmark
+  public String addressFormat() {
+    return formatted[next()].format();
+  }
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright 2018 Key Bridge.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.keybridge.gis.addressparser;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Streaming address cleanup for delimited text files (CSV, TSV).
+ * <p>
+ * Each input record contains the address fields in the order <em>street, city,
+ * state, postal code, country</em>; trailing fields may be omitted. Each record
+ * is cleaned with {@link AddressParser#parseAddress(Address)} and written to
+ * the output in the same field order. Records that cannot be cleaned are
+ * written unchanged.
+ * <p>
+ * A reader thread reads records through an NIO channel and submits them to a
+ * pool of parse workers. The pending results are held in a bounded queue in
+ * input order, and the calling thread writes each result as soon as it and
+ * all earlier results are complete. When the queue is full the reader blocks
+ * until the writer catches up, so at most {@code queueCapacity} records are in
+ * memory at any time regardless of the file size, and output order always
+ * matches input order.
+ * <p>
+ * Instances are immutable and may run several files concurrently.
+ *
+ * @author jesse
+ */
+public class AddressCleanupPipeline {
+
+  /**
+   * The default maximum number of records in flight.
+   */
+  private static final int DEFAULT_QUEUE_CAPACITY = 1024;
+  /**
+   * Marks the end of the input in the result queue.
+   */
+  private static final Future<CleanedRecord> END = CompletableFuture.completedFuture(null);
+
+  private final AddressParser addressParser;
+  private final char delimiter;
+  private final int parallelism;
+  private final int queueCapacity;
+
+  /**
+   * Construct a pipeline using the shared address parser, one worker per
+   * available processor and the default queue capacity.
+   *
+   * @param delimiter the field delimiter. e.g. ',' or '\t'
+   */
+  public AddressCleanupPipeline(char delimiter) {
+    this(AddressParser.shared(), delimiter, Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_CAPACITY);
+  }
+
+  /**
+   * Construct a fully configured pipeline.
+   *
+   * @param addressParser the address parser
+   * @param delimiter     the field delimiter. e.g. ',' or '\t'
+   * @param parallelism   the number of parse worker threads
+   * @param queueCapacity the maximum number of records in flight
+   */
+  public AddressCleanupPipeline(AddressParser addressParser, char delimiter, int parallelism, int queueCapacity) {
+    if (parallelism < 1 || queueCapacity < 1) {
+      throw new IllegalArgumentException("Parallelism and queue capacity must be positive");
+    }
+    this.addressParser = addressParser;
+    this.delimiter = delimiter;
+    this.parallelism = parallelism;
+    this.queueCapacity = queueCapacity;
+  }
+
+  /**
+   * Clean an address file, writing the result to a new file. An existing
+   * output file is replaced.
+   *
+   * @param input  the input file
+   * @param output the output file
+   * @param header true if the first line is a header to be copied unchanged
+   * @return a summary of the records processed
+   * @throws IOException if either file cannot be read or written
+   */
+  public Summary clean(Path input, Path output, boolean header) throws IOException {
+    try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+         FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      return clean(in, out, header);
+    }
+  }
+
+  /**
+   * Clean a stream of address records. The channels are read to the end and
+   * flushed but are not closed. Text is read and written as UTF-8.
+   *
+   * @param in     the input channel
+   * @param out    the output channel
+   * @param header true if the first line is a header to be copied unchanged
+   * @return a summary of the records processed
+   * @throws IOException if the input cannot be read or the output written
+   */
+  public Summary clean(ReadableByteChannel in, WritableByteChannel out, boolean header) throws IOException {
+    BufferedReader reader = new BufferedReader(Channels.newReader(in, StandardCharsets.UTF_8.newDecoder()
+                                                                  .onMalformedInput(CodingErrorAction.REPLACE)
+                                                                  .onUnmappableCharacter(CodingErrorAction.REPLACE), -1));
+    Writer writer = new BufferedWriter(Channels.newWriter(out, StandardCharsets.UTF_8.newEncoder(), -1));
+    BlockingQueue<Future<CleanedRecord>> queue = new ArrayBlockingQueue<>(queueCapacity);
+    AtomicReference<IOException> readFailure = new AtomicReference<>();
+    ExecutorService workers = Executors.newFixedThreadPool(parallelism, runnable -> {
+      Thread thread = new Thread(runnable, "address-cleanup-worker");
+      thread.setDaemon(true);
+      return thread;
+    });
+    Thread readerThread = new Thread(() -> read(reader, header, queue, workers, readFailure), "address-cleanup-reader");
+    readerThread.setDaemon(true);
+    readerThread.start();
+    long records = 0, failures = 0;
+    try {
+      Future<CleanedRecord> future;
+      while ((future = queue.take()) != END) {
+        CleanedRecord record = future.get();
+        writer.write(record.line);
+        writer.write('\n');
+        records++;
+        if (!record.cleaned) {
+          failures++;
+        }
+      }
+      writer.flush();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Address cleanup interrupted");
+    } catch (ExecutionException e) {
+      throw new IOException("Address cleanup failed", e.getCause());
+    } finally {
+      readerThread.interrupt();
+      workers.shutdownNow();
+    }
+    if (readFailure.get() != null) {
+      throw readFailure.get();
+    }
+    /**
+     * An empty input has no header line to discount.
+     */
+    return new Summary(header ? Math.max(0, records - 1) : records, failures);
+  }
+
+  /**
+   * Reader thread body. Submit each record to the workers and queue its pending
+   * result in input order, blocking while the queue is full.
+   */
+  private void read(BufferedReader reader,
+                    boolean header,
+                    BlockingQueue<Future<CleanedRecord>> queue,
+                    ExecutorService workers,
+                    AtomicReference<IOException> readFailure) {
+    try {
+      String line;
+      boolean first = header;
+      while ((line = reader.readLine()) != null) {
+        if (first) {
+          queue.put(CompletableFuture.completedFuture(new CleanedRecord(line, true)));
+          first = false;
+        } else if (!line.trim().isEmpty()) {
+          final String record = line;
+          queue.put(workers.submit(() -> cleanRecord(record)));
+        }
+      }
+    } catch (IOException e) {
+      readFailure.set(e);
+    } catch (InterruptedException e) {
+      /**
+       * The writer has stopped and is no longer waiting for the end marker.
+       */
+      return;
+    }
+    try {
+      queue.put(END);
+    } catch (InterruptedException e) {
+    }
+  }
+
+  /**
+   * Clean a single record. Never throws: a record that cannot be cleaned is
+   * returned unchanged.
+   *
+   * @param line the input record
+   * @return the output record
+   */
+  private CleanedRecord cleanRecord(String line) {
+    try {
+      List<String> fields = DelimitedRecord.split(line, delimiter);
+      Address address = Address.getInstance(field(fields, 0), field(fields, 1), field(fields, 2), field(fields, 3), field(fields, 4));
+      Address clean = addressParser.parseAddress(address);
+      return new CleanedRecord(DelimitedRecord.join(delimiter,
+                                                    clean.getStreet(),
+                                                    clean.getCity(),
+                                                    clean.getState(),
+                                                    clean.getPostalCode(),
+                                                    clean.getCountry()), true);
+    } catch (Exception e) {
+      return new CleanedRecord(line, false);
+    }
+  }
+
+  /**
+   * Get a field value by index, returning null if the field is missing or
+   * blank.
+   */
+  private static String field(List<String> fields, int index) {
+    if (index >= fields.size()) {
+      return null;
+    }
+    String value = fields.get(index).trim();
+    return value.isEmpty() ? null : value;
+  }
+
+  /**
+   * A single output record.
+   */
+  private static class CleanedRecord {
+
+    private final String line;
+    private final boolean cleaned;
+
+    CleanedRecord(String line, boolean cleaned) {
+      this.line = line;
+      this.cleaned = cleaned;
+    }
+  }
+
+  /**
+   * Summary of a pipeline run.
+   */
+  public static final class Summary {
+
+    private final long records;
+    private final long failures;
+
+    Summary(long records, long failures) {
+      this.records = records;
+      this.failures = failures;
+    }
+
+    /**
+     * @return the number of address records written, excluding any header
+     */
+    public long getRecords() {
+      return records;
+    }
+
+    /**
+     * @return the number of records that could not be cleaned and were
+     *         written unchanged
+     */
+    public long getFailures() {
+      return failures;
+    }
+
+    @Override
+    public String toString() {
+      return records + " records, " + failures + " failures";
+    }
+  }
+}
@@ -15,10 +15,24 @@
  */
 package ch.keybridge.gis.addressparser;
 
+import ch.keybridge.gis.addressparser.us.AddressCanonicalizer;
 import ch.keybridge.gis.addressparser.us.Formatter;
+import ch.keybridge.gis.addressparser.us.ParseBudget;
+import ch.keybridge.gis.addressparser.us.ParseCache;
+import ch.keybridge.gis.addressparser.us.ParseMetrics;
+import ch.keybridge.gis.addressparser.us.ParseStage;
 import ch.keybridge.gis.addressparser.us.Parser;
+import ch.keybridge.gis.addressparser.us.ParserEngine;
 import ch.keybridge.gis.addressparser.us.enumerated.AddressComponentKey;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Utility class to parse and standardize address information.
@@ -29,17 +43,129 @@ import java.util.Map;
  * (dictionnaries, spellchecking, synonyms), while correction is based on postal
  * reference data : correction checks if each element exists and if the
  * combination is correct.
+ * <p>
+ * <strong>Concurrency:</strong> instances are thread-safe. The
+ * underlying {@link Parser} and {@link Formatter} hold no per-call state, the
+ * regex patterns are compiled once and the reference data is loaded once and
+ * published as immutable maps. A single instance, such as the one returned by
+ * {@link #shared()}, may therefore be called concurrently from any number of
+ * threads and always returns the same result as a single-threaded call for
+ * the same input. The route counters are {@link LongAdder}s, updated without
+ * contention. The only other mutable object involved is the {@link Address}
+ * passed to {@link #parseAddress(Address)}, which is updated in place; callers
+ * must not hand the same {@code Address} instance to two threads at once.
  *
  * @author jesse
  */
 public class AddressParser {
 
+  /**
+   * A shared, thread-safe instance.
+   */
+  private static final AddressParser SHARED = new AddressParser();
+
   private final Formatter formatter;
   private final Parser parser;
+  /**
+   * The number of addresses cleaned along each route.
+   */
+  private final LongAdder[] routeCounts = new LongAdder[AddressRoute.values().length];
 
   public AddressParser() {
+    this(null);
+  }
+
+  /**
+   * Construct an address parser that caches parse results. Repeated inputs
+   * are answered from the cache instead of re-running the regex parser.
+   *
+   * @param cache the parse result cache, null to disable caching
+   */
+  public AddressParser(ParseCache cache) {
+    this(ParserEngine.REGEX, cache);
+  }
+
+  /**
+   * Construct an address parser using the indicated parsing engine.
+   *
+   * @param engine the parsing engine
+   * @param cache  the parse result cache, null to disable caching
+   */
+  public AddressParser(ParserEngine engine, ParseCache cache) {
+    this(engine, cache, null);
+  }
+
+  /**
+   * Construct an address parser whose parses are bounded by a work budget. A
+   * parse that exceeds the budget fails with a
+   * {@link ch.keybridge.gis.addressparser.us.ParseTimeoutException} instead of
+   * holding the calling thread.
+   *
+   * @param engine the parsing engine
+   * @param cache  the parse result cache, null to disable caching
+   * @param budget the per-parse work budget, null for unbounded parses
+   */
+  public AddressParser(ParserEngine engine, ParseCache cache, ParseBudget budget) {
+    this(engine, cache, budget, ParseMetrics.NONE);
+  }
+
+  /**
+   * Construct an address parser that reports its measurements. The parser
+   * reports the parse stages and the route and outcome of each parse; this
+   * class adds the normalize and format stages.
+   *
+   * @param engine  the parsing engine
+   * @param cache   the parse result cache, null to disable caching
+   * @param budget  the per-parse work budget, null for unbounded parses
+   * @param metrics receives the measurements. {@link ParseMetrics#NONE} to
+   *                disable.
+   */
+  public AddressParser(ParserEngine engine, ParseCache cache, ParseBudget budget, ParseMetrics metrics) {
     this.formatter = new Formatter();
-    this.parser = new Parser();
+    this.parser = new Parser(engine, cache, budget, metrics);
+    for (int i = 0; i < routeCounts.length; i++) {
+      routeCounts[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * Get a shared address parser instance. The instance is thread-safe and may
+   * be used concurrently by any number of threads; there is no need to pool or
+   * confine parsers to a thread.
+   *
+   * @return the shared address parser
+   */
+  public static AddressParser shared() {
+    return SHARED;
+  }
+
+  /**
+   * Get the parse result cache.
+   *
+   * @return the cache, null if caching is disabled
+   */
+  public ParseCache getCache() {
+    return parser.getCache();
+  }
+
+  /**
+   * Get the metrics that receive the parse measurements.
+   *
+   * @return the metrics, {@link ParseMetrics#NONE} if disabled
+   */
+  public ParseMetrics getMetrics() {
+    return parser.getMetrics();
+  }
+
+  /**
+   * Get the number of addresses {@link #parseAddress(Address)} has cleaned
+   * along a route. The expensive routes are those that run the parser.
+   *
+   * @param route the route
+   * @return the number of addresses that took the route
+   */
+  public long getRouteCount(AddressRoute route) {
+    return routeCounts[route.ordinal()].sum();
   }
 
   /**
@@ -69,31 +195,68 @@ public class AddressParser {
      * <p>
      * Instead just try to clean up and reformat the address components.
      */
-    if ("US".equalsIgnoreCase(address.getCountry())
-      || address.getStreet().toUpperCase().contains("BOX")
-      || !address.getStreet().matches("\\d")) {
-      address.setStreet(Formatter.toProperCase(address.getStreet().
-        toUpperCase().
-        replace("PO ", "POST OFFICE ").
-        replace("P.O.", "POST OFFICE").
-        replace("P. O.", "POST OFFICE")).trim());
-      address.setCity(Formatter.toProperCase(address.getCity()));
-      address.setCounty(Formatter.toProperCase(address.getCounty()));
-      address.setState(Formatter.toUpperCase(address.getState()));
-      address.setPostalCode(Formatter.toUpperCase(address.getPostalCode()));
-      return address;
+    AddressRoute route = route(address);
+    if (route.isParsed()) {
+      /**
+       * The address is in the United States and is not a P.O. Box.
+       */
+      Address addressClean = parse(address.format());
+      /**
+       * Dump NULL street address fields. If the parser could not read the
+       * street then clean up the address instead.
+       */
+      String street = addressClean.getStreet();
+      if (street != null && !street.trim().isEmpty() && !street.trim().equalsIgnoreCase("null")) {
+        routeCounts[AddressRoute.PARSED.ordinal()].increment();
+        addressClean.setCounty(Formatter.toProperCase(address.getCounty()));
+        return addressClean;
+      }
+      route = AddressRoute.UNPARSED;
     }
-    /**
-     * The address is in the United States and is not a P.O. Box.
-     */
-    Address addressClean = parse(address.format());
-    /**
-     * Dump NULL street address fields.
-     */
-    if (addressClean.getStreet().trim().equalsIgnoreCase("null")) {
-      addressClean.setStreet(Formatter.toProperCase(address.getStreet()));
+    routeCounts[route.ordinal()].increment();
+    address.setStreet(AddressCanonicalizer.canonicalStreet(address.getStreet()));
+    address.setCity(Formatter.toProperCase(address.getCity()));
+    address.setCounty(Formatter.toProperCase(address.getCounty()));
+    address.setState(Formatter.toUpperCase(address.getState()));
+    address.setPostalCode(Formatter.toUpperCase(address.getPostalCode()));
+    return address;
+  }
+
+  /**
+   * Choose the route of an address through {@link #parseAddress(Address)}.
+   * <p>
+   * Developer note: the tests are plain character scans. They run on every
+   * address, including those that are never parsed.
+   *
+   * @param address an address with a street and a country
+   * @return the route, {@link AddressRoute#PARSED} if the address should be
+   *         parsed
+   */
+  static AddressRoute route(Address address) {
+    if (!"US".equalsIgnoreCase(address.getCountry())) {
+      return AddressRoute.NON_US;
+    }
+    String street = address.getStreet();
+    boolean number = false;
+    for (int i = 0; i < street.length(); i++) {
+      char c = street.charAt(i);
+      if (c >= '0' && c <= '9') {
+        number = true;
+      } else if ((c == 'B' || c == 'b') && isWordAt(street, i, "BOX")) {
+        return AddressRoute.PO_BOX;
+      }
     }
-    return addressClean;
+    return number ? AddressRoute.PARSED : AddressRoute.NO_NUMBER;
+  }
+
+  /**
+   * @return true if the whole word, ignoring case, is at the index
+   */
+  private static boolean isWordAt(String text, int index, String word) {
+    int end = index + word.length();
+    return (index == 0 || !Character.isLetterOrDigit(text.charAt(index - 1)))
+      && text.regionMatches(true, index, word, 0, word.length())
+      && (end == text.length() || !Character.isLetterOrDigit(text.charAt(end)));
   }
 
   /**
@@ -123,7 +286,18 @@ public class AddressParser {
      * FCC ULS records do not provide a postal code, so not requiring one here
      * allows those addresses to be cleaned up and a postal code added later.
      */
-    return buildAddress(formatter.normalizeParsedAddress(parser.parse(addressRaw)));
+    Map<AddressComponentKey, String> parsedAddressMap = parser.parse(addressRaw);
+    ParseMetrics metrics = parser.getMetrics();
+    if (metrics == ParseMetrics.NONE) {
+      return buildAddress(formatter.normalizeParsedAddress(parsedAddressMap));
+    }
+    long start = System.nanoTime();
+    Map<AddressComponentKey, String> normalizedAddressMap = formatter.normalizeParsedAddress(parsedAddressMap);
+    long normalized = System.nanoTime();
+    metrics.recordStage(ParseStage.NORMALIZE, normalized - start);
+    Address address = buildAddress(normalizedAddressMap);
+    metrics.recordStage(ParseStage.FORMAT, System.nanoTime() - normalized);
+    return address;
 //    Address address = buildAddress(formatter.normalizeParsedAddress(parser.parseAddress(addressRaw)));
 //    if (!address.isComplete()) {
 //      throw new Exception("Address parsing could not produce a usable address");
@@ -131,6 +305,76 @@ public class AddressParser {
 //    return address;
   }
 
+  /**
+   * Parse a single raw address string, capturing any failure in the result
+   * instead of throwing it.
+   *
+   * @param addressRaw a free-text address String
+   * @return the parse result, never null
+   */
+  public ParseResult parseSafely(String addressRaw) {
+    try {
+      return ParseResult.success(addressRaw, parse(addressRaw));
+    } catch (Exception e) {
+      return ParseResult.failure(addressRaw, e);
+    }
+  }
+
+  /**
+   * Parse a stream of raw address strings.
+   * <p>
+   * Each element is mapped to its {@link ParseResult}; failures are recorded
+   * per element and never terminate the stream. The returned stream keeps the
+   * characteristics of the source: pass a parallel stream to parse in
+   * parallel, and encounter order is preserved for ordered sources. Records
+   * are parsed lazily so arbitrarily large sources may be processed.
+   *
+   * @param addresses a stream of free-text address Strings
+   * @return a stream of parse results
+   */
+  public Stream<ParseResult> parseAll(Stream<String> addresses) {
+    return addresses.map(this::parseSafely);
+  }
+
+  /**
+   * Parse a collection of raw address strings in parallel on the common
+   * fork-join pool.
+   *
+   * @param addresses a collection of free-text address Strings
+   * @return the parse results, in the iteration order of the collection
+   */
+  public List<ParseResult> parseAll(Collection<String> addresses) {
+    return parseAll(addresses.parallelStream()).collect(Collectors.toList());
+  }
+
+  /**
+   * Parse a collection of raw address strings in parallel on the provided
+   * executor.
+   * <p>
+   * The input is split into contiguous chunks, several per available
+   * processor, and each chunk is parsed as one task so the executor is not
+   * flooded with one task per record. This method blocks until every chunk is
+   * complete.
+   *
+   * @param addresses a collection of free-text address Strings
+   * @param executor  the executor on which to run the parse tasks
+   * @return the parse results, in the iteration order of the collection
+   */
+  public List<ParseResult> parseAll(Collection<String> addresses, Executor executor) {
+    List<String> input = new ArrayList<>(addresses);
+    int chunkSize = Math.max(1, input.size() / (4 * Runtime.getRuntime().availableProcessors()));
+    List<CompletableFuture<List<ParseResult>>> futures = new ArrayList<>();
+    for (int from = 0; from < input.size(); from += chunkSize) {
+      List<String> chunk = input.subList(from, Math.min(from + chunkSize, input.size()));
+      futures.add(CompletableFuture.supplyAsync(() -> parseAll(chunk.stream()).collect(Collectors.toList()), executor));
+    }
+    List<ParseResult> results = new ArrayList<>(input.size());
+    for (CompletableFuture<List<ParseResult>> future : futures) {
+      results.addAll(future.join());
+    }
+    return results;
+  }
+
   /**
    * Internal method to build a well-formed WSIF address from a parsed address
    * map.
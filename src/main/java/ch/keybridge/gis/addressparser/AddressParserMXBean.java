@@ -0,0 +1,144 @@
+/*
+ *   Copyright (C) 2012 Caulfield IP Holdings (Caulfield)
+ *   and/or its affiliates.
+ *   All rights reserved. Use is subject to license terms.
+ *
+ *   Software Code is protected by Caulfield Copyrights. Caulfield hereby
+ *   reserves all rights in and to Caulfield Copyrights and no license is
+ *   granted under Caulfield Copyrights in this Software License Agreement.
+ *   Caulfield generally licenses Caulfield Copyrights for commercialization
+ *   pursuant to the terms of either Caulfield's Standard Software Source Code
+ *   License Agreement or Caulfield's Standard Product License Agreement.
+ *
+ *   A copy of Caulfield's either License Agreement can be obtained on request
+ *   by email from: info@caufield.org.
+ */
+package ch.keybridge.gis.addressparser;
+
+import java.util.Date;
+
+/**
+ * JMX management interface of an address parser.
+ * <p>
+ * Latencies are per call in microseconds. Counts and latencies cover the
+ * calls since the parser was created or the counters were last reset.
+ *
+ * @author jesse
+ */
+public interface AddressParserMXBean {
+
+  //<editor-fold defaultstate="collapsed" desc="Throughput">
+  /**
+   * @return the number of raw addresses parsed, including cache hits
+   */
+  long getParseCount();
+
+  /**
+   * @return the mean parse latency in microseconds
+   */
+  double getParseMeanMicros();
+
+  /**
+   * @return the 99th percentile parse latency in microseconds
+   */
+  long getParseP99Micros();
+
+  /**
+   * @return the number of parsed addresses normalized
+   */
+  long getNormalizeCount();
+
+  /**
+   * @return the mean normalize latency in microseconds
+   */
+  double getNormalizeMeanMicros();
+
+  /**
+   * @return the 99th percentile normalize latency in microseconds
+   */
+  long getNormalizeP99Micros();
+
+  /**
+   * @return the number of normalized addresses formatted
+   */
+  long getFormatCount();
+
+  /**
+   * @return the mean format latency in microseconds
+   */
+  double getFormatMeanMicros();
+
+  /**
+   * @return the 99th percentile format latency in microseconds
+   */
+  long getFormatP99Micros();
+
+  /**
+   * @return the fraction of parses that returned no result, from 0 to 1
+   */
+  double getNullResultRate();
+
+  /**
+   * @return the number of parses abandoned for exceeding the work budget
+   */
+  long getTimeoutCount();
+  //</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="Cache">
+  /**
+   * @return the number of cached parse results, zero if caching is disabled
+   */
+  long getCacheSize();
+
+  /**
+   * @return the number of parse cache hits
+   */
+  long getCacheHitCount();
+
+  /**
+   * @return the number of parse cache misses
+   */
+  long getCacheMissCount();
+
+  /**
+   * @return the fraction of cache lookups that hit, from 0 to 1
+   */
+  double getCacheHitRate();
+  //</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="Reference Data">
+  /**
+   * @return the number of city alias names, in all states
+   */
+  int getCityAliasCount();
+
+  /**
+   * @return the number of city names confused with a street designator, in
+   *         all states
+   */
+  int getExceptionCityCount();
+
+  /**
+   * @return the time taken to load the reference data in milliseconds
+   */
+  long getReferenceDataLoadMillis();
+
+  /**
+   * @return the time the reference data was loaded
+   */
+  Date getReferenceDataLoadedAt();
+  //</editor-fold>
+
+  /**
+   * Reset the parse counters, latency histograms and cache counters.
+   */
+  void resetCounters();
+
+  /**
+   * Reload the reference data and discard the cached parse results, which
+   * may depend on it. A memory-mapped snapshot file must have been replaced by
+   * rename, never rewritten in place; see
+   * {@link ch.keybridge.gis.addressparser.us.ReferenceDataSnapshot#FILE_PROPERTY}.
+   */
+  void reloadReferenceData();
+}
@@ -0,0 +1,207 @@
+/*
+ *   Copyright (C) 2012 Caulfield IP Holdings (Caulfield)
+ *   and/or its affiliates.
+ *   All rights reserved. Use is subject to license terms.
+ *
+ *   Software Code is protected by Caulfield Copyrights. Caulfield hereby
+ *   reserves all rights in and to Caulfield Copyrights and no license is
+ *   granted under Caulfield Copyrights in this Software License Agreement.
+ *   Caulfield generally licenses Caulfield Copyrights for commercialization
+ *   pursuant to the terms of either Caulfield's Standard Software Source Code
+ *   License Agreement or Caulfield's Standard Product License Agreement.
+ *
+ *   A copy of Caulfield's either License Agreement can be obtained on request
+ *   by email from: info@caufield.org.
+ */
+package ch.keybridge.gis.addressparser;
+
+import ch.keybridge.gis.addressparser.us.LatencyHistogram;
+import ch.keybridge.gis.addressparser.us.ParseCache;
+import ch.keybridge.gis.addressparser.us.ParseEvent;
+import ch.keybridge.gis.addressparser.us.ParseOutcome;
+import ch.keybridge.gis.addressparser.us.ParseStage;
+import ch.keybridge.gis.addressparser.us.ParseStatistics;
+import ch.keybridge.gis.addressparser.us.ReferenceData;
+import java.lang.management.ManagementFactory;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * JMX view of an address parser that records its measurements in a
+ * {@link ParseStatistics}. e.g.
+ * <pre>
+ * ParseStatistics statistics = new ParseStatistics();
+ * AddressParser parser = new AddressParser(ParserEngine.REGEX, cache, null, statistics);
+ * AddressParserMonitor.register(parser, "default");
+ * </pre>
+ * Every attribute is read from the statistics, the cache and the reference
+ * data when requested; the monitor adds nothing to the parse path.
+ *
+ * @author jesse
+ */
+public class AddressParserMonitor implements AddressParserMXBean {
+
+  /**
+   * The JMX domain of registered monitors.
+   */
+  public static final String DOMAIN = "ch.keybridge.gis.addressparser";
+
+  private final ParseStatistics statistics;
+  private final ParseCache cache;
+
+  /**
+   * Construct a monitor.
+   *
+   * @param statistics the statistics the parser records to
+   * @param cache      the parser's result cache, null if caching is disabled
+   */
+  public AddressParserMonitor(ParseStatistics statistics, ParseCache cache) {
+    if (statistics == null) {
+      throw new IllegalArgumentException("Statistics are required");
+    }
+    this.statistics = statistics;
+    this.cache = cache;
+  }
+
+  /**
+   * Register a monitor of an address parser with the platform MBean server,
+   * under the name
+   * {@code ch.keybridge.gis.addressparser:type=AddressParser,name="<name>"}.
+   *
+   * @param parser the address parser. Its metrics must be a
+   *               {@link ParseStatistics}.
+   * @param name   the name distinguishing this parser from others
+   * @return the registered object name
+   * @throws JMException if the monitor cannot be registered
+   */
+  public static ObjectName register(AddressParser parser, String name) throws JMException {
+    if (!(parser.getMetrics() instanceof ParseStatistics)) {
+      throw new IllegalArgumentException("The parser does not record ParseStatistics");
+    }
+    ObjectName objectName = new ObjectName(DOMAIN + ":type=AddressParser,name=" + ObjectName.quote(name));
+    AddressParserMonitor monitor = new AddressParserMonitor((ParseStatistics) parser.getMetrics(), parser.getCache());
+    ManagementFactory.getPlatformMBeanServer().registerMBean(monitor, objectName);
+    return objectName;
+  }
+
+  //<editor-fold defaultstate="collapsed" desc="Throughput">
+  @Override
+  public long getParseCount() {
+    return statistics.getLatency(ParseStage.PARSE).getCount();
+  }
+
+  @Override
+  public double getParseMeanMicros() {
+    return statistics.getLatency(ParseStage.PARSE).getMean(TimeUnit.MICROSECONDS);
+  }
+
+  @Override
+  public long getParseP99Micros() {
+    return p99(statistics.getLatency(ParseStage.PARSE));
+  }
+
+  @Override
+  public long getNormalizeCount() {
+    return statistics.getLatency(ParseStage.NORMALIZE).getCount();
+  }
+
+  @Override
+  public double getNormalizeMeanMicros() {
+    return statistics.getLatency(ParseStage.NORMALIZE).getMean(TimeUnit.MICROSECONDS);
+  }
+
+  @Override
+  public long getNormalizeP99Micros() {
+    return p99(statistics.getLatency(ParseStage.NORMALIZE));
+  }
+
+  @Override
+  public long getFormatCount() {
+    return statistics.getLatency(ParseStage.FORMAT).getCount();
+  }
+
+  @Override
+  public double getFormatMeanMicros() {
+    return statistics.getLatency(ParseStage.FORMAT).getMean(TimeUnit.MICROSECONDS);
+  }
+
+  @Override
+  public long getFormatP99Micros() {
+    return p99(statistics.getLatency(ParseStage.FORMAT));
+  }
+
+  @Override
+  public double getNullResultRate() {
+    long count = getParseCount();
+    return count == 0 ? 0 : (double) statistics.getCount(ParseEvent.NO_RESULT) / count;
+  }
+
+  @Override
+  public long getTimeoutCount() {
+    return statistics.getCount(ParseOutcome.TIMED_OUT);
+  }
+
+  private static long p99(LatencyHistogram histogram) {
+    return histogram.getValueAtPercentile(99, TimeUnit.MICROSECONDS);
+  }//</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="Cache">
+  @Override
+  public long getCacheSize() {
+    return cache == null ? 0 : cache.size();
+  }
+
+  @Override
+  public long getCacheHitCount() {
+    return cache == null ? 0 : cache.getHitCount();
+  }
+
+  @Override
+  public long getCacheMissCount() {
+    return cache == null ? 0 : cache.getMissCount();
+  }
+
+  @Override
+  public double getCacheHitRate() {
+    return cache == null ? 0 : cache.getHitRate();
+  }//</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="Reference Data">
+  @Override
+  public int getCityAliasCount() {
+    return ReferenceData.getCityAliasCount();
+  }
+
+  @Override
+  public int getExceptionCityCount() {
+    return ReferenceData.getExceptionCityCount();
+  }
+
+  @Override
+  public long getReferenceDataLoadMillis() {
+    return ReferenceData.getLoadTime(TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public Date getReferenceDataLoadedAt() {
+    return new Date(ReferenceData.getLoadedAt());
+  }//</editor-fold>
+
+  @Override
+  public void resetCounters() {
+    statistics.reset();
+    if (cache != null) {
+      cache.resetCounts();
+    }
+  }
+
+  @Override
+  public void reloadReferenceData() {
+    ReferenceData.reload();
+    if (cache != null) {
+      cache.clear();
+    }
+  }
+}
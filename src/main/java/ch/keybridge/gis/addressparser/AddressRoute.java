@@ -0,0 +1,58 @@
+/*
+ *   Copyright (C) 2012 Caulfield IP Holdings (Caulfield)
+ *   and/or its affiliates.
+ *   All rights reserved. Use is subject to license terms.
+ *
+ *   Software Code is protected by Caulfield Copyrights. Caulfield hereby
+ *   reserves all rights in and to Caulfield Copyrights and no license is
+ *   granted under Caulfield Copyrights in this Software License Agreement.
+ *   Caulfield generally licenses Caulfield Copyrights for commercialization
+ *   pursuant to the terms of either Caulfield's Standard Software Source Code
+ *   License Agreement or Caulfield's Standard Product License Agreement.
+ *
+ *   A copy of Caulfield's either License Agreement can be obtained on request
+ *   by email from: info@caufield.org.
+ */
+package ch.keybridge.gis.addressparser;
+
+/**
+ * Enumerated list of the routes an address takes through
+ * {@link AddressParser#parseAddress(Address)}.
+ * <p>
+ * Only U.S. street addresses with a house number are run through the parser.
+ * All other addresses take the cheap path: the address components are cleaned
+ * up and re-cased but not parsed.
+ *
+ * @author jesse
+ */
+public enum AddressRoute {
+
+  /**
+   * A U.S. street address with a house number that was parsed.
+   */
+  PARSED,
+  /**
+   * A U.S. street address with a house number that the parser could not read.
+   * The address was parsed and then cleaned up on the cheap path.
+   */
+  UNPARSED,
+  /**
+   * A post office box. Cleaned up on the cheap path.
+   */
+  PO_BOX,
+  /**
+   * An address outside the United States. Cleaned up on the cheap path.
+   */
+  NON_US,
+  /**
+   * A street without a house number. Cleaned up on the cheap path.
+   */
+  NO_NUMBER;
+
+  /**
+   * @return true if the route runs the parser
+   */
+  public boolean isParsed() {
+    return this == PARSED || this == UNPARSED;
+  }
+}
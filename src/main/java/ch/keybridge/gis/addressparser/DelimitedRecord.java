@@ -0,0 +1,107 @@
+/*
+ * Copyright 2018 Key Bridge.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.keybridge.gis.addressparser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and writes single-line delimited text records (CSV, TSV). Fields may
+ * be enclosed in double quotes, in which case the delimiter may appear inside
+ * the field and a literal quote is written as two quotes. Records may not span
+ * lines.
+ *
+ * @author jesse
+ */
+class DelimitedRecord {
+
+  private static final char QUOTE = '"';
+
+  private DelimitedRecord() {
+  }
+
+  /**
+   * Split a record into its fields.
+   *
+   * @param line      a single record
+   * @param delimiter the field delimiter
+   * @return the unquoted field values
+   */
+  static List<String> split(String line, char delimiter) {
+    List<String> fields = new ArrayList<>();
+    StringBuilder sb = new StringBuilder();
+    boolean quoted = false;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (quoted) {
+        if (c == QUOTE) {
+          if (i + 1 < line.length() && line.charAt(i + 1) == QUOTE) {
+            sb.append(QUOTE);
+            i++;
+          } else {
+            quoted = false;
+          }
+        } else {
+          sb.append(c);
+        }
+      } else if (c == QUOTE && sb.length() == 0) {
+        quoted = true;
+      } else if (c == delimiter) {
+        fields.add(sb.toString());
+        sb.setLength(0);
+      } else {
+        sb.append(c);
+      }
+    }
+    fields.add(sb.toString());
+    return fields;
+  }
+
+  /**
+   * Join field values into a record, quoting any value that contains the
+   * delimiter or a quote. Null values are written as empty fields.
+   *
+   * @param delimiter the field delimiter
+   * @param fields    the field values
+   * @return a single record
+   */
+  static String join(char delimiter, String... fields) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < fields.length; i++) {
+      if (i > 0) {
+        sb.append(delimiter);
+      }
+      String field = fields[i];
+      if (field == null) {
+        continue;
+      }
+      if (field.indexOf(delimiter) >= 0 || field.indexOf(QUOTE) >= 0) {
+        sb.append(QUOTE);
+        for (int j = 0; j < field.length(); j++) {
+          char c = field.charAt(j);
+          if (c == QUOTE) {
+            sb.append(QUOTE);
+          }
+          sb.append(c);
+        }
+        sb.append(QUOTE);
+      } else {
+        sb.append(field);
+      }
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2018 Key Bridge.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.keybridge.gis.addressparser;
+
+import ch.keybridge.gis.addressparser.us.ParseTimeoutException;
+
+/**
+ * The outcome of parsing a single record in a batch. A result holds either the
+ * parsed address or the exception that prevented it from being parsed, so one
+ * bad record does not stop the batch.
+ *
+ * @author jesse
+ */
+public final class ParseResult {
+
+  /**
+   * The raw input address string.
+   */
+  private final String input;
+  /**
+   * The parsed address. Null if parsing failed.
+   */
+  private final Address address;
+  /**
+   * The parse failure. Null if parsing succeeded.
+   */
+  private final Exception error;
+
+  private ParseResult(String input, Address address, Exception error) {
+    this.input = input;
+    this.address = address;
+    this.error = error;
+  }
+
+  /**
+   * Construct a successful result.
+   *
+   * @param input   the raw input address string
+   * @param address the parsed address
+   * @return a new successful result
+   */
+  public static ParseResult success(String input, Address address) {
+    return new ParseResult(input, address, null);
+  }
+
+  /**
+   * Construct a failed result.
+   *
+   * @param input the raw input address string
+   * @param error the exception raised while parsing
+   * @return a new failed result
+   */
+  public static ParseResult failure(String input, Exception error) {
+    return new ParseResult(input, null, error);
+  }
+
+  /**
+   * Get the raw input address string.
+   *
+   * @return the input
+   */
+  public String getInput() {
+    return input;
+  }
+
+  /**
+   * Get the parsed address.
+   *
+   * @return the parsed address, null if parsing failed
+   */
+  public Address getAddress() {
+    return address;
+  }
+
+  /**
+   * Get the exception raised while parsing.
+   *
+   * @return the parse failure, null if parsing succeeded
+   */
+  public Exception getError() {
+    return error;
+  }
+
+  /**
+   * @return true if the input was parsed without error
+   */
+  public boolean isSuccess() {
+    return error == null;
+  }
+
+  /**
+   * @return true if parsing was abandoned for exceeding its work budget
+   */
+  public boolean isTimedOut() {
+    return error instanceof ParseTimeoutException;
+  }
+
+  @Override
+  public String toString() {
+    return isSuccess() ? String.valueOf(address) : (isTimedOut() ? "TIMED OUT " : "FAILED ") + input + ": " + error.getMessage();
+  }
+}
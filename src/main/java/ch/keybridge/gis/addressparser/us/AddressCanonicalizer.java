@@ -0,0 +1,239 @@
+package ch.keybridge.gis.addressparser.us;
+
+/**
+ * Hand-written, single pass canonicalization of raw address text.
+ * <p>
+ * Each method replaces a chain of regex replacements with one linear scan into
+ * a per-thread buffer, producing exactly the same output as the chain it
+ * replaces. Only the result String is allocated.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author jesse
+ */
+public final class AddressCanonicalizer {
+
+  /**
+   * The post office box abbreviations and their expansions, matched in upper
+   * case. No abbreviation overlaps another, so their order does not matter.
+   */
+  private static final String[] PO_ABBREVIATIONS = {"PO ", "P.O.", "P. O."};
+  private static final String[] PO_EXPANSIONS = {"POST OFFICE ", "POST OFFICE", "POST OFFICE"};
+  /**
+   * The largest ratio of expansion length to abbreviation length.
+   */
+  private static final int MAX_EXPANSION = 4;
+
+  /**
+   * Per-thread output buffer.
+   */
+  private static final ThreadLocal<Buffer> BUFFER = ThreadLocal.withInitial(Buffer::new);
+
+  private AddressCanonicalizer() {
+  }
+
+  /**
+   * Clean a raw address for parsing: replace punctuation other than
+   * {@code ( ) # & ' `} and leading and trailing non-word characters with a
+   * space, collapse white space and trim.
+   * <p>
+   * The result equals
+   * <pre>
+   * WHITESPACE.matcher(CLEANUP.matcher(raw).replaceAll(" ")).replaceAll(" ").trim()
+   * </pre> using the patterns of
+   * {@link ch.keybridge.gis.addressparser.us.regex.RegexPatternRegistry}.
+   *
+   * @param raw the raw address
+   * @return the cleaned address
+   */
+  public static String clean(String raw) {
+    int length = raw.length();
+    /**
+     * Leading and trailing runs of non-word characters become a single space
+     * that is trimmed away, so only the text between the first and the last
+     * word character is scanned.
+     */
+    int first = 0;
+    while (first < length && !isWordChar(raw.charAt(first))) {
+      first++;
+    }
+    if (first == length) {
+      return "";
+    }
+    int last = length - 1;
+    while (!isWordChar(raw.charAt(last))) {
+      last--;
+    }
+    char[] chars = buffer(last - first + 1);
+    int size = 0;
+    for (int i = first; i <= last; i++) {
+      char c = raw.charAt(i);
+      if (isCleanupChar(c)) {
+        if (size == 0 || chars[size - 1] != ' ') {
+          chars[size++] = ' ';
+        }
+      } else {
+        chars[size++] = c;
+      }
+    }
+    return trimmed(raw, chars, size);
+  }
+
+  /**
+   * Canonicalize the street line of a post office box or other address that
+   * is not parsed: expand the abbreviations "PO", "P.O." and "P. O." to "Post
+   * Office", set proper case and trim.
+   * <p>
+   * The result equals
+   * <pre>
+   * Formatter.toProperCase(street.toUpperCase()
+   *   .replace("PO ", "POST OFFICE ")
+   *   .replace("P.O.", "POST OFFICE")
+   *   .replace("P. O.", "POST OFFICE")).trim()
+   * </pre>
+   *
+   * @param street the street line, not empty
+   * @return the canonical street line
+   */
+  public static String canonicalStreet(String street) {
+    boolean ascii = isAscii(street);
+    String upper = ascii ? street : street.toUpperCase();
+    char[] chars = buffer(MAX_EXPANSION * upper.length());
+    int size = 0;
+    for (int i = 0; i < upper.length();) {
+      int abbreviation = postOfficeAt(upper, i);
+      if (abbreviation != -1) {
+        String expansion = PO_EXPANSIONS[abbreviation];
+        expansion.getChars(0, expansion.length(), chars, size);
+        size += expansion.length();
+        i += PO_ABBREVIATIONS[abbreviation].length();
+      } else {
+        char c = upper.charAt(i++);
+        chars[size++] = c >= 'a' && c <= 'z' ? (char) (c - ('a' - 'A')) : c;
+      }
+    }
+    if (!ascii) {
+      return Formatter.toProperCase(new String(chars, 0, size)).trim();
+    }
+    return trimmed(null, chars, Formatter.toProperCase(chars, size));
+  }
+
+  /**
+   * Find a post office box abbreviation, ignoring the case of ASCII letters.
+   *
+   * @return the index of the abbreviation at the position, -1 if none
+   */
+  private static int postOfficeAt(String text, int index) {
+    char c = text.charAt(index);
+    if (c != 'P' && c != 'p') {
+      return -1;
+    }
+    for (int a = 0; a < PO_ABBREVIATIONS.length; a++) {
+      if (text.regionMatches(true, index, PO_ABBREVIATIONS[a], 0, PO_ABBREVIATIONS[a].length())) {
+        return a;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Build the result String, trimming characters up to the space character
+   * from both ends as {@link String#trim()} does.
+   *
+   * @param source the source text the buffer was copied from, null if none
+   * @param chars  the buffer
+   * @param size   the number of buffered characters
+   * @return the trimmed text, the source itself if unchanged
+   */
+  private static String trimmed(String source, char[] chars, int size) {
+    int start = 0, end = size;
+    while (start < end && chars[start] <= ' ') {
+      start++;
+    }
+    while (end > start && chars[end - 1] <= ' ') {
+      end--;
+    }
+    return source != null && regionEquals(source, chars, start, end)
+           ? source
+           : new String(chars, start, end - start);
+  }
+
+  /**
+   * @return true if the string equals the buffered characters in the range
+   *         [start, end)
+   */
+  private static boolean regionEquals(String string, char[] chars, int start, int end) {
+    if (string.length() != end - start) {
+      return false;
+    }
+    for (int i = start; i < end; i++) {
+      if (string.charAt(i - start) != chars[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Get the per-thread buffer, grown to at least a length.
+   */
+  private static char[] buffer(int length) {
+    Buffer buffer = BUFFER.get();
+    if (buffer.chars.length < length) {
+      buffer.chars = new char[Math.max(length, 2 * buffer.chars.length)];
+    }
+    return buffer.chars;
+  }
+
+  /**
+   * A word character, the regex {@code \w}.
+   */
+  static boolean isWordChar(char c) {
+    return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_';
+  }
+
+  /**
+   * A character replaced by a space: the regex
+   * {@code [\s\p{Punct}&&[^\)\(#&'`]]}.
+   */
+  static boolean isCleanupChar(char c) {
+    switch (c) {
+      case ' ':
+      case '\t':
+      case '\n':
+      case 0x0B:
+      case '\f':
+      case '\r':
+        return true;
+      case '(':
+      case ')':
+      case '#':
+      case '&':
+      case '\'':
+      case '`':
+        return false;
+      default:
+        return c >= '!' && c <= '/' || c >= ':' && c <= '@' || c >= '[' && c <= '`' || c >= '{' && c <= '~';
+    }
+  }
+
+  /**
+   * @return true if the string contains only ASCII characters
+   */
+  private static boolean isAscii(String string) {
+    for (int i = 0; i < string.length(); i++) {
+      if (string.charAt(i) >= 0x80) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * A reusable output buffer for one thread.
+   */
+  private static final class Buffer {
+
+    private char[] chars = new char[128];
+  }
+}
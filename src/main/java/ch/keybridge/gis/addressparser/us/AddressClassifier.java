@@ -0,0 +1,156 @@
+package ch.keybridge.gis.addressparser.us;
+
+import ch.keybridge.gis.addressparser.us.enumerated.EnumeratedLookup;
+import ch.keybridge.gis.addressparser.us.regex.NumberAndOrdinalPattern;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Pre-classifier that chooses the {@link ParseRoute} of an address with a
+ * single scan, before any regex runs.
+ * <p>
+ * Each test is a necessary condition of a pattern, so a pattern is only
+ * skipped when it cannot match and the parse result is the same as trying
+ * every pattern in turn:
+ * <ul>
+ * <li>Every pattern ends with the last line, which must consume the final
+ * word character of the address. That character is either the last digit of
+ * a zip code or the last letter of a state.</li>
+ * <li>The street address pattern needs a house number - a digit, a letter and
+ * a digit, or a spelled number from zero to nineteen - at the start of a word
+ * and followed by more text.</li>
+ * <li>The intersection pattern is only tried if the address contains a corner
+ * word.</li>
+ * </ul>
+ * <p>
+ * This class is stateless and thread-safe.
+ *
+ * @author jesse
+ */
+final class AddressClassifier {
+
+  private AddressClassifier() {
+  }
+
+  /**
+   * Choose the route of a cleaned address.
+   *
+   * @param address the cleaned address
+   * @return the route
+   */
+  static ParseRoute classify(String address) {
+    int length = address.length();
+    if (length == 0) {
+      return ParseRoute.LAST_LINE;
+    }
+    char last = address.charAt(length - 1);
+    if (isWordChar(last) && !isDigit(last) && !endsWithState(address)) {
+      return ParseRoute.NO_MATCH;
+    }
+    /**
+     * The last non-word character that is followed by more text. A house
+     * number must start before it.
+     */
+    int lastBreak = length - 2;
+    while (lastBreak >= 0 && isWordChar(address.charAt(lastBreak))) {
+      lastBreak--;
+    }
+    boolean corner = false;
+    for (int i = 0; i < length; i++) {
+      char c = address.charAt(i);
+      if (c == '&' || c == '@') {
+        corner = true;
+      } else if (i == 0 || !isWordChar(address.charAt(i - 1))) {
+        if (i < lastBreak && isHouseNumberAt(address, i)) {
+          return ParseRoute.STREET_ADDRESS;
+        }
+        corner = corner || isCornerWordAt(address, i);
+      }
+    }
+    return corner ? ParseRoute.INTERSECTION : ParseRoute.LAST_LINE;
+  }
+
+  /**
+   * @return true if a house number may start at the index
+   */
+  private static boolean isHouseNumberAt(String address, int index) {
+    char c = address.charAt(index);
+    if (isDigit(c)) {
+      return true;
+    }
+    if (!isLetter(c)) {
+      return false;
+    }
+    if (index + 1 < address.length() && isDigit(address.charAt(index + 1))) {
+      return true;
+    }
+    for (String word : Dictionary.NUMBER_WORDS) {
+      if (address.regionMatches(true, index, word, 0, word.length())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return true if the word "and" or "at" is at the index
+   */
+  private static boolean isCornerWordAt(String address, int index) {
+    return isWordAt(address, index, "AND") || isWordAt(address, index, "AT");
+  }
+
+  private static boolean isWordAt(String address, int index, String word) {
+    int end = index + word.length();
+    return address.regionMatches(true, index, word, 0, word.length())
+      && (end == address.length() || !isWordChar(address.charAt(end)));
+  }
+
+  /**
+   * @return true if the address ends with a state name or abbreviation
+   */
+  private static boolean endsWithState(String address) {
+    for (String state : Dictionary.STATES) {
+      if (address.regionMatches(true, address.length() - state.length(), state, 0, state.length())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * A word character, the regex {@code \w}.
+   */
+  private static boolean isWordChar(char c) {
+    return isLetter(c) || isDigit(c) || c == '_';
+  }
+
+  private static boolean isLetter(char c) {
+    return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z';
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  /**
+   * The words matched by the patterns. Initialized on first use.
+   */
+  private static final class Dictionary {
+
+    /**
+     * The state names and abbreviations.
+     */
+    private static final String[] STATES = union(EnumeratedLookup.getSTATE().keySet(), EnumeratedLookup.getSTATE().values());
+    /**
+     * The spelled house numbers.
+     */
+    private static final String[] NUMBER_WORDS = (NumberAndOrdinalPattern.TXT_NUM_0_9 + "|" + NumberAndOrdinalPattern.TXT_NUM_10_19).split("\\|");
+
+    private static String[] union(Collection<String> a, Collection<String> b) {
+      Set<String> set = new HashSet<>(a);
+      set.addAll(b);
+      return set.toArray(new String[0]);
+    }
+  }
+}
@@ -0,0 +1,112 @@
+package ch.keybridge.gis.addressparser.us;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Off-heap city alias dictionary backed by a {@link ReferenceDataSnapshot}.
+ * <p>
+ * The aliases of each state are stored in the snapshot sorted by alias name
+ * without white space. A lookup binary searches them, comparing the characters
+ * of the query directly against the stored bytes and skipping white space in
+ * both as it goes, so no key string is built and no map is held on the heap. Only the per-state
+ * section positions and the real city names returned by successful lookups
+ * live on the heap; each city name is decoded once, on first use, and shared
+ * with the {@link ZipCodeIndex}.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author jesse
+ */
+final class CityAliasDictionary {
+
+  private final ReferenceDataSnapshot snapshot;
+  private final ByteBuffer buffer;
+  /**
+   * The size of a string reference.
+   */
+  private final int width;
+  /**
+   * The buffer position of each state's alias entries.
+   */
+  private final Map<String, Integer> statePositions = new HashMap<>();
+
+  /**
+   * Construct a dictionary over a snapshot.
+   *
+   * @param snapshot the reference data snapshot
+   */
+  CityAliasDictionary(ReferenceDataSnapshot snapshot) {
+    this.snapshot = snapshot;
+    this.buffer = snapshot.getBuffer();
+    this.width = snapshot.getWidth();
+    int position = snapshot.getCityAliasPosition() + 4;
+    for (int s = buffer.getInt(snapshot.getCityAliasPosition()); s > 0; s--) {
+      statePositions.put(snapshot.getString(snapshot.getReference(position)), position + width);
+      position += width + 4 + 2 * width * buffer.getInt(position + width);
+    }
+  }
+
+  /**
+   * Get the real city name for a city alias.
+   *
+   * @param alias the alias name. White space is ignored.
+   * @param state the 2-character state abbreviation
+   * @return the real city name, null if the name is not a known alias in the
+   *         state
+   */
+  String resolve(CharSequence alias, String state) {
+    Integer position = statePositions.get(state);
+    if (position == null) {
+      return null;
+    }
+    int low = 0, high = buffer.getInt(position) - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int entry = position + 4 + 2 * width * mid;
+      int cmp = compare(snapshot.getReference(entry), alias);
+      if (cmp < 0) {
+        low = mid + 1;
+      } else if (cmp > 0) {
+        high = mid - 1;
+      } else {
+        return snapshot.getSharedString(snapshot.getReference(entry + width));
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Compare a stored string with a query, ignoring white space in both.
+   *
+   * @return negative, zero or positive as the stored string is less than,
+   *         equal to or greater than the query
+   */
+  private int compare(int id, CharSequence query) {
+    int position = snapshot.stringStart(id), end = snapshot.stringEnd(id);
+    int i = 0, length = query.length();
+    while (true) {
+      while (position < end && isWhitespace((char) (buffer.get(position) & 0xff))) {
+        position++;
+      }
+      while (i < length && isWhitespace(query.charAt(i))) {
+        i++;
+      }
+      if (position == end || i == length) {
+        return (position == end ? 0 : 1) - (i == length ? 0 : 1);
+      }
+      int diff = (buffer.get(position++) & 0xff) - query.charAt(i++);
+      if (diff != 0) {
+        return diff;
+      }
+    }
+  }
+
+  /**
+   * The white space characters matched by the regex {@code \s}.
+   */
+  static boolean isWhitespace(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+  }
+}
@@ -0,0 +1,310 @@
+package ch.keybridge.gis.addressparser.us;
+
+import ch.keybridge.gis.addressparser.us.enumerated.FuzzyLookup;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Approximate lookup of the canonical city of a misspelled city name, e.g.
+ * "ALEXANDIRA" for ALEXANDRIA or "MACLAEN" for MC LEAN.
+ * <p>
+ * The canonical city names and the city alias names of each state are indexed
+ * by their character trigrams, white space ignored. A lookup counts the
+ * trigrams each name shares with the query and discards the names that share
+ * too few to be within the allowed edit distance: an edit changes at most four
+ * trigrams. Only the {@value #MAX_CANDIDATES} names sharing the most trigrams
+ * are then compared with the query, so a lookup never scans all the cities of
+ * a state.
+ * <p>
+ * The names of a state are indexed on the first lookup in that state.
+ * <p>
+ * The allowed edit distance is that of {@link FuzzyLookup}: none for names of
+ * fewer than 5 characters, one for up to 7 characters and two for longer
+ * names.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author jesse
+ */
+final class CityNameIndex {
+
+  /**
+   * The most names compared with the query in one lookup.
+   */
+  static final int MAX_CANDIDATES = 16;
+
+  private final ZipCodeIndex zipCodeIndex;
+  private final CityAliasDictionary aliasDictionary;
+  /**
+   * The zip code records of each state, by 2-character state abbreviation.
+   */
+  private final Map<String, int[]> records = new HashMap<>();
+  /**
+   * The names of each state that has been indexed.
+   */
+  private final Map<String, StateNames> states = new ConcurrentHashMap<>();
+
+  /**
+   * Construct an index of the city and alias names of a zip code index.
+   *
+   * @param zipCodeIndex    the zip code index
+   * @param aliasDictionary the city alias dictionary, giving the canonical city
+   *                        of an alias that is known in several cities
+   */
+  CityNameIndex(ZipCodeIndex zipCodeIndex, CityAliasDictionary aliasDictionary) {
+    this.zipCodeIndex = zipCodeIndex;
+    this.aliasDictionary = aliasDictionary;
+    Map<String, List<Integer>> stateRecords = new HashMap<>();
+    for (int record = 0; record < zipCodeIndex.size(); record++) {
+      stateRecords.computeIfAbsent(zipCodeIndex.getState(record), s -> new ArrayList<>()).add(record);
+    }
+    for (Map.Entry<String, List<Integer>> entry : stateRecords.entrySet()) {
+      records.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+    }
+  }
+
+  /**
+   * Determine if a name is a city or alias name of a state.
+   *
+   * @param name  the upper case name. White space is ignored.
+   * @param state the 2-character state abbreviation
+   * @return true if the name is known in the state
+   */
+  boolean contains(CharSequence name, String state) {
+    return records.containsKey(state) && states.computeIfAbsent(state, this::index).cities.containsKey(strip(name));
+  }
+
+  /**
+   * Find the canonical city of a city or alias name.
+   *
+   * @param name  the upper case name. White space is ignored.
+   * @param state the 2-character state abbreviation
+   * @return the canonical city of the name or of the nearest name within the
+   *         allowed edit distance, null if there is none or if names of
+   *         different cities are equally near
+   */
+  String find(CharSequence name, String state) {
+    if (!records.containsKey(state)) {
+      return null;
+    }
+    return states.computeIfAbsent(state, this::index).find(strip(name));
+  }
+
+  /**
+   * Index the names of a state. A canonical city name maps to itself even if
+   * it is also listed as an alias of another city.
+   */
+  private StateNames index(String state) {
+    Map<String, String> names = new HashMap<>();
+    for (int record : records.get(state)) {
+      String city = zipCodeIndex.getCity(record);
+      names.put(strip(city), city);
+    }
+    for (int record : records.get(state)) {
+      for (int i = 0; i < zipCodeIndex.getAliasCount(record); i++) {
+        String alias = strip(zipCodeIndex.getAlias(record, i));
+        if (!names.containsKey(alias)) {
+          String city = aliasDictionary.resolve(alias, state);
+          names.put(alias, city != null ? city : zipCodeIndex.getCity(record));
+        }
+      }
+    }
+    return new StateNames(names);
+  }
+
+  /**
+   * Remove the white space from a name.
+   */
+  private static String strip(CharSequence name) {
+    StringBuilder sb = new StringBuilder(name.length());
+    for (int i = 0; i < name.length(); i++) {
+      if (!Character.isWhitespace(name.charAt(i))) {
+        sb.append(name.charAt(i));
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Get the trigrams of a name, padded at each end so that a name of n
+   * characters has n trigrams. Each trigram is packed into an int.
+   */
+  private static int[] trigrams(String name) {
+    int[] trigrams = new int[name.length()];
+    for (int i = 0; i < name.length(); i++) {
+      char previous = i == 0 ? '^' : name.charAt(i - 1);
+      char next = i + 1 == name.length() ? '$' : name.charAt(i + 1);
+      trigrams[i] = (previous & 0x3ff) << 20 | (name.charAt(i) & 0x3ff) << 10 | next & 0x3ff;
+    }
+    return trigrams;
+  }
+
+  /**
+   * The city and alias names of a state.
+   * <p>
+   * The trigram postings are held in three arrays: the distinct trigrams in
+   * increasing order, the start of each trigram's postings and the name
+   * indexes of all postings, so the index holds no boxed values.
+   */
+  private static final class StateNames {
+
+    /**
+     * Per-thread count of the trigrams each name shares with the query, and
+     * the names counted. Counts are reset after each lookup.
+     */
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    /**
+     * The canonical city of each name, by name without white space.
+     */
+    private final Map<String, String> cities;
+    /**
+     * The names without white space.
+     */
+    private final String[] names;
+    private final int[] trigrams;
+    private final int[] offsets;
+    private final int[] postings;
+
+    private StateNames(Map<String, String> cities) {
+      this.cities = cities;
+      this.names = cities.keySet().toArray(new String[0]);
+      /**
+       * Sort the distinct (trigram, name) pairs, then split them by trigram.
+       */
+      int count = 0;
+      long[] pairs = new long[16];
+      for (int i = 0; i < names.length; i++) {
+        for (int trigram : trigrams(names[i])) {
+          if (count == pairs.length) {
+            pairs = Arrays.copyOf(pairs, 2 * count);
+          }
+          pairs[count++] = (long) trigram << 32 | i;
+        }
+      }
+      Arrays.sort(pairs, 0, count);
+      int distinct = 0;
+      int[] keys = new int[count];
+      int[] starts = new int[count + 1];
+      int[] ids = new int[count];
+      int size = 0;
+      for (int i = 0; i < count; i++) {
+        if (i > 0 && pairs[i] == pairs[i - 1]) {
+          continue;
+        }
+        int trigram = (int) (pairs[i] >>> 32);
+        if (distinct == 0 || keys[distinct - 1] != trigram) {
+          keys[distinct] = trigram;
+          starts[distinct++] = size;
+        }
+        ids[size++] = (int) pairs[i];
+      }
+      starts[distinct] = size;
+      this.trigrams = Arrays.copyOf(keys, distinct);
+      this.offsets = Arrays.copyOf(starts, distinct + 1);
+      this.postings = Arrays.copyOf(ids, size);
+    }
+
+    private String find(String name) {
+      String city = cities.get(name);
+      int maxDistance = FuzzyLookup.getMaxDistance(name.length());
+      if (city != null || maxDistance == 0) {
+        return city;
+      }
+      /**
+       * Count the trigrams each name shares with the query. A name within the
+       * allowed distance shares all but four trigrams per edit.
+       */
+      int[] query = trigrams(name);
+      Arrays.sort(query);
+      int minShared = Math.max(1, query.length - 4 * maxDistance);
+      Scratch scratch = SCRATCH.get();
+      int[] counts = scratch.counts(names.length);
+      int touched = 0;
+      for (int i = 0; i < query.length; i++) {
+        int t;
+        if (i > 0 && query[i] == query[i - 1] || (t = Arrays.binarySearch(trigrams, query[i])) < 0) {
+          continue;
+        }
+        for (int p = offsets[t]; p < offsets[t + 1]; p++) {
+          int index = postings[p];
+          if (counts[index]++ == 0) {
+            touched = scratch.touch(touched, index);
+          }
+        }
+      }
+      /**
+       * Keep the names sharing enough trigrams, most shared first, and reset
+       * the counts.
+       */
+      int candidates = 0;
+      long[] ranked = new long[Math.min(touched, 64)];
+      for (int i = 0; i < touched; i++) {
+        int index = scratch.touched[i];
+        int shared = counts[index];
+        counts[index] = 0;
+        if (shared >= minShared && Math.abs(names[index].length() - name.length()) <= maxDistance) {
+          if (candidates == ranked.length) {
+            ranked = Arrays.copyOf(ranked, 2 * candidates);
+          }
+          ranked[candidates++] = (long) -shared << 32 | index;
+        }
+      }
+      Arrays.sort(ranked, 0, candidates);
+      /**
+       * Compare the query with the names sharing the most trigrams.
+       */
+      String nearest = null;
+      int nearestDistance = maxDistance + 1;
+      boolean ambiguous = false;
+      for (int i = 0; i < candidates && i < MAX_CANDIDATES; i++) {
+        String candidate = names[(int) ranked[i]];
+        int limit = Math.min(maxDistance, FuzzyLookup.getMaxDistance(candidate.length()));
+        int distance = FuzzyLookup.distance(name, candidate, limit);
+        if (distance > limit) {
+          continue;
+        }
+        if (distance < nearestDistance) {
+          nearest = cities.get(candidate);
+          nearestDistance = distance;
+          ambiguous = false;
+        } else if (distance == nearestDistance && !cities.get(candidate).equals(nearest)) {
+          ambiguous = true;
+        }
+      }
+      return ambiguous ? null : nearest;
+    }
+  }
+
+  /**
+   * Per-thread counters for a lookup.
+   */
+  private static final class Scratch {
+
+    private int[] counts = new int[0];
+    private int[] touched = new int[64];
+
+    /**
+     * @return zeroed counters for a number of names
+     */
+    private int[] counts(int size) {
+      if (counts.length < size) {
+        counts = new int[size];
+      }
+      return counts;
+    }
+
+    /**
+     * Record a counted name.
+     *
+     * @return the number of names counted
+     */
+    private int touch(int count, int index) {
+      if (count == touched.length) {
+        touched = Arrays.copyOf(touched, 2 * count);
+      }
+      touched[count] = index;
+      return count + 1;
+    }
+  }
+}
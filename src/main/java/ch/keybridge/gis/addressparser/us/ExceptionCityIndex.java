@@ -0,0 +1,94 @@
+package ch.keybridge.gis.addressparser.us;
+
+import ch.keybridge.gis.addressparser.us.regex.KeywordAutomaton;
+import java.util.*;
+
+/**
+ * Index over the city names that are easily confused with a street designator
+ * (e.g. "WHEAT RIDGE" in "CO").
+ * <p>
+ * All exception city names of all states are compiled into a single
+ * {@link KeywordAutomaton}, so an address is searched for every confusing city
+ * in one pass instead of one substring scan per city. Each city name records
+ * the states in which it occurs.
+ * <p>
+ * Instances are immutable and thread-safe.
+ *
+ * @author jesse
+ */
+final class ExceptionCityIndex {
+
+  /**
+   * The states in which each city name occurs.
+   */
+  private final Map<String, Set<String>> statesByCity;
+  /**
+   * The automaton over all city names. Keyword ids index
+   * {@link #statesById}.
+   */
+  private final KeywordAutomaton automaton;
+  private final List<Set<String>> statesById;
+  /**
+   * The number of words in the longest city name.
+   */
+  private final int maxWords;
+
+  /**
+   * Build an index.
+   *
+   * @param exceptionCityMap the city names indexed by state abbreviation
+   */
+  ExceptionCityIndex(Map<String, List<String>> exceptionCityMap) {
+    Map<String, Set<String>> map = new LinkedHashMap<>();
+    for (Map.Entry<String, List<String>> entry : exceptionCityMap.entrySet()) {
+      for (String city : entry.getValue()) {
+        map.computeIfAbsent(city, k -> new HashSet<>()).add(entry.getKey());
+      }
+    }
+    int words = 0;
+    for (Map.Entry<String, Set<String>> entry : map.entrySet()) {
+      entry.setValue(Collections.unmodifiableSet(entry.getValue()));
+      words = Math.max(words, entry.getKey().split(" ").length);
+    }
+    this.statesByCity = Collections.unmodifiableMap(map);
+    this.automaton = new KeywordAutomaton(map.keySet());
+    List<Set<String>> states = new ArrayList<>(automaton.size());
+    for (int i = 0; i < automaton.size(); i++) {
+      states.add(map.get(automaton.getKeyword(i)));
+    }
+    this.statesById = states;
+    this.maxWords = words;
+  }
+
+  /**
+   * Get the states in which a city name is known to confuse the parser.
+   *
+   * @param city the upper case city name
+   * @return the state abbreviations, null if the city is not an exception
+   *         city
+   */
+  Set<String> getStates(String city) {
+    return statesByCity.get(city);
+  }
+
+  /**
+   * @return the number of words in the longest exception city name
+   */
+  int getMaxWords() {
+    return maxWords;
+  }
+
+  /**
+   * Find the right-most exception city in an address.
+   *
+   * @param upperAddress the upper case address
+   * @param state        the normalized 2-character state abbreviation, null to
+   *                     accept an exception city of any state
+   * @return the right-most match, null if none is found
+   */
+  KeywordAutomaton.Match findLast(String upperAddress, String state) {
+    return state == null
+           ? automaton.findLast(upperAddress, false)
+           : automaton.findLast(upperAddress, false, id -> statesById.get(id).contains(state));
+  }
+}
@@ -3,75 +3,35 @@ package ch.keybridge.gis.addressparser.us;
 import ch.keybridge.gis.addressparser.us.Formatter;
 import ch.keybridge.gis.addressparser.us.enumerated.AddressComponentKey;
 import ch.keybridge.gis.addressparser.us.enumerated.EnumeratedLookup;
-import ch.keybridge.gis.addressparser.us.regex.AddressComponentPattern;
-import ch.keybridge.gis.addressparser.us.regex.NumberAndOrdinalPattern;
-import ch.keybridge.gis.addressparser.us.regex.RegexPatternFactory;
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
+import ch.keybridge.gis.addressparser.us.regex.RegexPatternRegistry;
 import java.util.*;
 import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Class to output well-formed, formated address strings from a parse address
  * object.
+ * <p>
+ * This class is stateless and thread-safe.
  *
  * @TODO synonym resolutions for common city names
  * @author jesse
  */
 public class Formatter {
 
-  private static final Map<String, Map<String, String>> CITY_ALIAS_MAP = new HashMap<>();
+  /**
+   * The address component keys, in declaration order.
+   */
+  private static final AddressComponentKey[] KEYS = AddressComponentKey.values();
+  /**
+   * Per-thread scratch space for the normalization methods.
+   */
+  private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
 
+  /**
+   * Construct a new formatter. Reference data is loaded lazily and shared by
+   * all instances, so construction is free.
+   */
   public Formatter() {
-    init();
-  }
-
-  private void init() {
-    BufferedReader bufferedReader = null;
-    try {
-      bufferedReader = new BufferedReader(new InputStreamReader(Formatter.class.getClassLoader().getResourceAsStream("META-INF/address/city-alias.txt")));
-      String line;
-      Map<String, Set<String>> allRealCitiesMap = new HashMap<>();
-      while ((line = bufferedReader.readLine()) != null) {
-        String[] items = line.split("\\s*=\\s*");
-        String[] cs = items[0].split("<b>")[1].split("\\s*,\\s*");
-        String city = cs[0], state = cs[1];
-        String[] alias = items[1].split("[|]");
-
-        Map<String, String> aliasMap = CITY_ALIAS_MAP.get(state);
-        if (aliasMap == null) {
-          aliasMap = new HashMap<>();
-          CITY_ALIAS_MAP.put(state, aliasMap);
-        }
-
-        for (String a : alias) {
-          String aa = a.split("\\s*,\\s*")[0];
-          String realCity = city.intern();
-
-          Set<String> allRealCities = allRealCitiesMap.get(state);
-          if (allRealCities == null) {
-            allRealCities = new HashSet<>();
-            allRealCitiesMap.put(state, allRealCities);
-          }
-          allRealCities.add(realCity);
-          if (!allRealCities.contains(aa)) {
-            aliasMap.put(aa.replaceAll("\\s+", "").intern(), city.intern());
-          }
-        }
-      }
-      allRealCitiesMap.clear();
-    } catch (IOException e) {
-      throw new Error("Unable to initalize City Alias Resolver", e);
-    } finally {
-      if (bufferedReader != null) {
-        try {
-          bufferedReader.close();
-        } catch (IOException e) {
-        }
-      }
-    }
   }
 
   /**
@@ -112,7 +72,7 @@ public class Formatter {
     appendIfNotNull(sb, parsedAddressMap.get(AddressComponentKey.STATE), " ");
     appendIfNotNull(sb, parsedAddressMap.get(AddressComponentKey.ZIP), " ");
 
-    return sb.toString().replaceAll(" ,", ",").trim();
+    return RegexPatternRegistry.SPACE_COMMA.matcher(sb).replaceAll(",").trim();
   }
 
   /**
@@ -157,7 +117,7 @@ public class Formatter {
     }
     appendIfNotNull(sb, parsedAddressMap.get(AddressComponentKey.LINE2), "");
 
-    return sb.toString().replaceAll(" ,", ",").trim();
+    return RegexPatternRegistry.SPACE_COMMA.matcher(sb).replaceAll(",").trim();
   }
 
   /**
@@ -167,74 +127,112 @@ public class Formatter {
    * @return normalized address in a map
    */
   public Map<AddressComponentKey, String> normalizeParsedAddress(Map<AddressComponentKey, String> parsedAddr) {
-    Map<AddressComponentKey, String> addressComponentMap = new EnumMap<>(AddressComponentKey.class);
+    return normalizeParsedAddress(parsedAddr, new ParsedAddress());
+  }
+
+  /**
+   * Normalize the input parsedAddr map into a caller supplied map.
+   * <p>
+   * This is the allocation-conscious form of
+   * {@link #normalizeParsedAddress(Map)}: callers normalizing many addresses
+   * on one thread may pass the same target map each time. Components that are
+   * already in normal form are returned as the input string instance, and the
+   * well-known words (street types, ordinals, saint cities) map to shared
+   * constants, so a typical street address allocates little beyond its
+   * reformatted components.
+   *
+   * @param parsedAddr the parsed address
+   * @param target     the map to receive the normalized address. It is
+   *                   cleared first.
+   * @return the target map
+   */
+  public Map<AddressComponentKey, String> normalizeParsedAddress(Map<AddressComponentKey, String> parsedAddr,
+                                                                 Map<AddressComponentKey, String> target) {
+    target.clear();
     /**
      * Null check. If the address failed to parse then return an empty component
      * map.
      */
     if (parsedAddr == null) {
-      return addressComponentMap;
+      return target;
     }
     /**
-     * Developer note: Just take the digits from the number component
+     * Developer note: Look up each key rather than iterate the entry set; the
+     * entry iterator of a map allocates an entry per component.
+     * Components that are output in proper case are never upper cased: the
+     * lookups they need are case-insensitive.
      */
-    for (Map.Entry<AddressComponentKey, String> e : parsedAddr.entrySet()) {
-      String v = e.getValue().toUpperCase(Locale.getDefault());
-      switch (e.getKey()) {
+    for (AddressComponentKey key : KEYS) {
+      String v = parsedAddr.get(key);
+      if (v == null) {
+        continue;
+      }
+      switch (key) {
         case PREDIR:
-          addressComponentMap.put(AddressComponentKey.PREDIR, normalizeDirection(v));
-          break;
         case POSTDIR:
-          addressComponentMap.put(AddressComponentKey.POSTDIR, normalizeDirection(v));
-          break;
-        case TYPE:
-          addressComponentMap.put(AddressComponentKey.TYPE, toProperCase(normalizeStreetType(v)));
-          break;
         case PREDIR2:
-          addressComponentMap.put(AddressComponentKey.PREDIR2, normalizeDirection(v));
-          break;
         case POSTDIR2:
-          addressComponentMap.put(AddressComponentKey.POSTDIR2, normalizeDirection(v));
+          target.put(key, normalizeDirection(v.toUpperCase(Locale.getDefault())));
           break;
+        case TYPE:
         case TYPE2:
-          addressComponentMap.put(AddressComponentKey.TYPE2, toProperCase(normalizeStreetType(v)));
+          target.put(key, properStreetType(v));
           break;
         case NUMBER:
-          addressComponentMap.put(AddressComponentKey.NUMBER, normalizeNumber(v));
+          target.put(key, normalizeNumber(v.toUpperCase(Locale.getDefault())));
           break;
         case STATE:
-          addressComponentMap.put(AddressComponentKey.STATE, normalizeState(v));
+          target.put(key, normalizeState(v.toUpperCase(Locale.getDefault())));
           break;
         case ZIP:
-          addressComponentMap.put(AddressComponentKey.ZIP, normalizeZip(v));
+          target.put(key, normalizeZip(v.toUpperCase(Locale.getDefault())));
           break;
         case LINE2:
-          addressComponentMap.put(AddressComponentKey.LINE2, toProperCase(normalizeLine2(v)));
+          target.put(key, properLine2(v));
           break;
         case CITY:
-          addressComponentMap.put(AddressComponentKey.CITY, toProperCase(saintAbbrExpansion(v)));
+          target.put(key, properCity(v));
           break;
         case STREET:
-          addressComponentMap.put(AddressComponentKey.STREET, toProperCase(normalizeOrdinal(saintAbbrExpansion(v))));
-          break;
         case STREET2:
-          addressComponentMap.put(AddressComponentKey.STREET2, toProperCase(normalizeOrdinal(saintAbbrExpansion(v))));
+          target.put(key, properStreet(v));
           break;
         default:
-          addressComponentMap.put(e.getKey(), v);
+          target.put(key, v.toUpperCase(Locale.getDefault()));
           break;
       }
     }
-    addressComponentMap.put(AddressComponentKey.CITY,
-                            resolveCityAlias(addressComponentMap.get(AddressComponentKey.CITY),
-                                             addressComponentMap.get(AddressComponentKey.STATE)));
-    return addressComponentMap;
+    /**
+     * Fill in a missing city or state from the zip code.
+     */
+    if (target.get(AddressComponentKey.ZIP) != null
+      && (target.get(AddressComponentKey.CITY) == null || target.get(AddressComponentKey.STATE) == null)) {
+      ZipCodeIndex zipCodeIndex = ReferenceData.getZipCodeIndex();
+      int record = zipCodeIndex.find(target.get(AddressComponentKey.ZIP));
+      if (record != -1) {
+        target.putIfAbsent(AddressComponentKey.STATE, zipCodeIndex.getState(record));
+        if (target.get(AddressComponentKey.CITY) == null) {
+          target.put(AddressComponentKey.CITY, toProperCase(zipCodeIndex.getCity(record)));
+        }
+      }
+    }
+    if (target.get(AddressComponentKey.CITY) != null) {
+      target.put(AddressComponentKey.CITY,
+                 resolveCityAlias(target.get(AddressComponentKey.CITY),
+                                  target.get(AddressComponentKey.STATE)));
+    }
+    return target;
   }
 
   /**
    * Set a string to proper case - lower case with the first character
    * uppercase. Credit to
    * http://www.theeggeadventure.com/wikimedia/index.php/Java_Proper_Case
+   * <p>
+   * A letter is capitalized at the start of the string and after any character
+   * that is not a letter, digit or underscore. The conversion is a single pass
+   * over a per-thread scratch buffer. If the string is already in proper case
+   * it is returned as is.
    *
    * @param string
    * @return string formatted to proper case
@@ -243,14 +241,15 @@ public class Formatter {
     if (string == null || string.isEmpty()) {
       return null;
     }
-    Pattern p = Pattern.compile("(^|\\W)([a-z])");
-    Matcher m = p.matcher(string.toLowerCase());
-    StringBuffer sb = new StringBuffer(string.length());
-    while (m.find()) {
-      m.appendReplacement(sb, m.group(1) + m.group(2).toUpperCase());
-    }
-    m.appendTail(sb);
-    return sb.toString();
+    /**
+     * Only ASCII letters are case converted in place. Other text is lower cased
+     * by the JDK first, which may change its length.
+     */
+    String lower = isAscii(string) ? string : string.toLowerCase();
+    char[] chars = SCRATCH.get().chars(lower.length());
+    lower.getChars(0, lower.length(), chars, 0);
+    int length = toProperCase(chars, lower.length());
+    return regionEquals(string, chars, length) ? string : new String(chars, 0, length);
   }
 
   /**
@@ -286,15 +285,21 @@ public class Formatter {
     if (numberString == null || numberString.isEmpty()) {
       return null;
     }
+    /**
+     * Most numbers are plain digits, which are already normal.
+     */
+    if (isDigits(numberString)) {
+      return numberString;
+    }
     /**
      * Match a number as text pattern
      */
-    Matcher m = Pattern.compile("^\\W*(" + NumberAndOrdinalPattern.TXT_NUM_0_19 + ")\\W*").matcher(numberString);
+    Matcher m = RegexPatternRegistry.NUMBER_TEXT.matcher(numberString);
     String ret = null;
     if (m.matches()) {
       ret = m.group(1);
       if (ret.contains("-") || ret.contains(" ")) {//it's a 2 part number
-        String[] pair = ret.split("[ -]");
+        String[] pair = RegexPatternRegistry.NUMBER_PAIR_SEPARATOR.split(ret);
         String pre = EnumeratedLookup.getNUMBER().get(pair[0]).substring(0, 1);
         ret = pre + EnumeratedLookup.getNUMBER().get(pair[1]);
       } else {
@@ -304,7 +309,7 @@ public class Formatter {
       /**
        * Match a number as digit pattern
        */
-      m = Pattern.compile("(.*?\\d+)\\W*(.+)?").matcher(numberString);
+      m = RegexPatternRegistry.NUMBER_DIGIT.matcher(numberString);
       if (m.matches()) {
         ret = m.group(2) == null ? m.group(1) : m.group(1) + "-" + m.group(2);
       }
@@ -327,17 +332,6 @@ public class Formatter {
     return directionWord.length() > 2 ? EnumeratedLookup.getDIRECTION().get(directionWord) : directionWord;
   }
 
-  /**
-   * Normalize the street type, converting street type words (road, alley,
-   * circle...) to their respective abbreviation
-   *
-   * @param streetType
-   * @return
-   */
-  private String normalizeStreetType(String streetType) {
-    return returnNotNull(EnumeratedLookup.getSTREET_TYPE().get(streetType), streetType);
-  }
-
   /**
    * Get a known US state.
    *
@@ -348,29 +342,6 @@ public class Formatter {
     return returnNotNull(EnumeratedLookup.getSTATE().get(state), state);
   }
 
-  /**
-   * Normalize line 2 of an address containing address unit plus unit number.
-   *
-   * @param line2 address line 2
-   * @return normalized address line 2 containing address unit plus unit number
-   */
-  @SuppressWarnings("AssignmentToMethodParameter")
-  private String normalizeLine2(String line2) {
-    if (line2 == null || line2.isEmpty()) {
-      return null;
-    }
-    Matcher m = Pattern.compile("\\W*(?:" + AddressComponentPattern.LINE2A_GROUPED + ")\\W*").matcher(line2);
-    if (m.matches()) {
-      for (Map.Entry<String, String> e : EnumeratedLookup.getADDRESS_UNIT().entrySet()) {
-        if (line2.startsWith(e.getKey() + " ")) {
-          line2 = line2.replaceFirst(e.getKey() + " ", e.getValue() + " ");
-          break;
-        }
-      }
-    }
-    return line2;
-  }
-
   /**
    * Normalize the zip code field to a 5-character zip code string
    *
@@ -389,44 +360,180 @@ public class Formatter {
    * list of known aliases.
    * <p>
    * This method checks the city-alias data set and is only valid for US cities.
+   * A known city or alias name is returned as is. A name that is neither is
+   * resolved to the city with the nearest city or alias name in the state, if
+   * one is near enough, see {@link CityNameIndex}.
    *
    * @param cityAliasName
    * @param state
-   * @return the real city if the input {@code city} is an recognized alias,
-   *         otherwise returns the original input
+   * @return the real city in proper case if the input {@code city} is a
+   *         misspelled alias or city, otherwise returns the original input
    */
   private String resolveCityAlias(String cityAliasName, String state) {
-    if (cityAliasName.isEmpty() || state.isEmpty()) {
+    if (cityAliasName == null || state == null || cityAliasName.isEmpty() || state.isEmpty()) {
+      return cityAliasName;
+    }
+    /**
+     * The names are upper case; the city name is in proper case by now.
+     */
+    String name = cityAliasName.toUpperCase(Locale.ENGLISH);
+    CityNameIndex index = ReferenceData.getCityNameIndex();
+    if (index.contains(name, state)) {
       return cityAliasName;
     }
-    return CITY_ALIAS_MAP.containsKey(state)
-           ? RegexPatternFactory.returnNotNull(CITY_ALIAS_MAP.get(state).get(cityAliasName.replaceAll("\\s+", "")),
-                                               cityAliasName)
-           : cityAliasName;
+    String city = index.find(name, state);
+    return city == null ? cityAliasName : properCity(city);
   }
 
   /**
-   * Expand a city name containing the prefix 'st' to the word 'saint'
+   * Convert a street type to its abbreviation in proper case.
    *
-   * @param cityName
-   * @return
+   * @param streetType the street type, any case
+   * @return the proper case abbreviation
    */
-  private String saintAbbrExpansion(String cityName) {
-    return EnumeratedLookup.getSAINT_CITY().get(cityName) != null
-           ? EnumeratedLookup.getSAINT_CITY().get(cityName)
-           : cityName;
+  private String properStreetType(String streetType) {
+    String abbreviation = Lookups.STREET_TYPE.get(streetType);
+    return abbreviation != null ? abbreviation : toProperCase(streetType);
   }
 
   /**
-   * Convert a spelled ordinal to the numerical equivalent. e.g. first to 1st.
+   * Normalize a city name to proper case, expanding the prefix 'st' to the word
+   * 'saint'.
    *
-   * @param ordinalWord
-   * @return
+   * @param cityName the city name, any case
+   * @return the proper case city name
    */
-  private String normalizeOrdinal(String ordinalWord) {
-    return EnumeratedLookup.getNUMBER_ORDINAL().get(ordinalWord) != null
-           ? EnumeratedLookup.getNUMBER_ORDINAL().get(ordinalWord)
-           : ordinalWord;
+  private String properCity(String cityName) {
+    String saint = Lookups.SAINT_CITY.get(cityName);
+    return saint != null ? saint : toProperCase(cityName);
+  }
+
+  /**
+   * Normalize a street name to proper case, expanding the prefix 'st' to the
+   * word 'saint' and converting a spelled ordinal to its numerical equivalent.
+   *
+   * @param streetName the street name, any case
+   * @return the proper case street name
+   */
+  @SuppressWarnings("AssignmentToMethodParameter")
+  private String properStreet(String streetName) {
+    String saint = Lookups.SAINT_CITY.get(streetName);
+    if (saint != null) {
+      streetName = saint;
+    }
+    String ordinal = Lookups.NUMBER_ORDINAL.get(streetName);
+    return ordinal != null ? ordinal : toProperCase(streetName);
+  }
+
+  /**
+   * Normalize line 2 of an address containing address unit plus unit number
+   * and set it to proper case.
+   *
+   * @param line2 address line 2, any case
+   * @return normalized address line 2 containing address unit plus unit number
+   */
+  private String properLine2(String line2) {
+    for (int i = 0; i < Lookups.ADDRESS_UNIT_KEYS.length; i++) {
+      String unit = Lookups.ADDRESS_UNIT_KEYS[i];
+      if (line2.length() > unit.length()
+        && line2.charAt(unit.length()) == ' '
+        && line2.regionMatches(true, 0, unit, 0, unit.length())) {
+        /**
+         * The unit is only replaced if the whole line is a unit plus unit
+         * number. The pattern expects upper case.
+         */
+        Scratch scratch = SCRATCH.get();
+        boolean matches = scratch.line2.reset(line2.toUpperCase(Locale.getDefault())).matches();
+        scratch.line2.reset("");
+        if (!matches) {
+          break;
+        }
+        String abbreviation = Lookups.ADDRESS_UNIT_VALUES[i];
+        int length = abbreviation.length() + line2.length() - unit.length();
+        char[] chars = scratch.chars(length);
+        abbreviation.getChars(0, abbreviation.length(), chars, 0);
+        line2.getChars(unit.length(), line2.length(), chars, abbreviation.length());
+        if (!isAscii(chars, length)) {
+          return toProperCase(new String(chars, 0, length));
+        }
+        return new String(chars, 0, toProperCase(chars, length));
+      }
+    }
+    return toProperCase(line2);
+  }
+
+  /**
+   * Set ASCII text in a character buffer to proper case in place.
+   *
+   * @param chars  the buffer
+   * @param length the length of the text
+   * @return the length of the text
+   */
+  static int toProperCase(char[] chars, int length) {
+    boolean wordStart = true;
+    for (int i = 0; i < length; i++) {
+      char c = chars[i];
+      if (c >= 'A' && c <= 'Z') {
+        c += 'a' - 'A';
+      }
+      if (wordStart && c >= 'a' && c <= 'z') {
+        c -= 'a' - 'A';
+      }
+      chars[i] = c;
+      wordStart = !(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_');
+    }
+    return length;
+  }
+
+  /**
+   * @return true if the string contains only ASCII characters
+   */
+  private static boolean isAscii(String string) {
+    for (int i = 0; i < string.length(); i++) {
+      if (string.charAt(i) >= 0x80) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return true if the string contains only the digits 0-9
+   */
+  private static boolean isDigits(String string) {
+    for (int i = 0; i < string.length(); i++) {
+      if (string.charAt(i) < '0' || string.charAt(i) > '9') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return true if the buffer contains only ASCII characters
+   */
+  private static boolean isAscii(char[] chars, int length) {
+    for (int i = 0; i < length; i++) {
+      if (chars[i] >= 0x80) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return true if the string equals the text in the buffer
+   */
+  private static boolean regionEquals(String string, char[] chars, int length) {
+    if (string.length() != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (string.charAt(i) != chars[i]) {
+        return false;
+      }
+    }
+    return true;
   }
 
   /**
@@ -455,4 +562,65 @@ public class Formatter {
   private static <T> T returnNotNull(T candidate, T replacement) {
     return candidate == null ? replacement : candidate;
   }//</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="Lookups and Scratch">
+  /**
+   * Case-insensitive views of the enumerated lookups whose results are output
+   * in proper case. Values are stored in proper case so a hit needs no
+   * conversion, and each value is also a key of its own. Initialized on first
+   * use.
+   */
+  private static final class Lookups {
+
+    private static final Map<String, String> STREET_TYPE = properCaseLookup(EnumeratedLookup.getSTREET_TYPE());
+    private static final Map<String, String> SAINT_CITY = properCaseLookup(EnumeratedLookup.getSAINT_CITY());
+    private static final Map<String, String> NUMBER_ORDINAL = properCaseLookup(EnumeratedLookup.getNUMBER_ORDINAL());
+    /**
+     * The address unit words and their upper case abbreviations, by index.
+     */
+    private static final String[] ADDRESS_UNIT_KEYS = EnumeratedLookup.getADDRESS_UNIT().keySet().toArray(new String[0]);
+    private static final String[] ADDRESS_UNIT_VALUES = new String[ADDRESS_UNIT_KEYS.length];
+
+    static {
+      for (int i = 0; i < ADDRESS_UNIT_KEYS.length; i++) {
+        ADDRESS_UNIT_VALUES[i] = EnumeratedLookup.getADDRESS_UNIT().get(ADDRESS_UNIT_KEYS[i]);
+      }
+    }
+
+    private static Map<String, String> properCaseLookup(Map<String, String> lookup) {
+      Map<String, String> map = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+      for (Map.Entry<String, String> entry : lookup.entrySet()) {
+        map.put(entry.getKey(), toProperCase(entry.getValue()));
+      }
+      /**
+       * A value that is already in normal form maps to itself.
+       */
+      for (String value : lookup.values()) {
+        map.putIfAbsent(value, toProperCase(value));
+      }
+      return Collections.unmodifiableMap(map);
+    }
+  }
+
+  /**
+   * Reusable buffers for one thread.
+   */
+  private static final class Scratch {
+
+    private char[] chars = new char[64];
+    /**
+     * A reusable matcher for the line 2 pattern.
+     */
+    private final Matcher line2 = RegexPatternRegistry.LINE2.matcher("");
+
+    /**
+     * Get the character buffer, grown to at least a length.
+     */
+    char[] chars(int length) {
+      if (chars.length < length) {
+        chars = new char[Math.max(length, 2 * chars.length)];
+      }
+      return chars;
+    }
+  }//</editor-fold>
 }
@@ -0,0 +1,173 @@
+package ch.keybridge.gis.addressparser.us;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent histogram of latencies in nanoseconds with a fixed relative
+ * precision, in the manner of an HDR histogram.
+ * <p>
+ * Values below 32 ns are counted exactly. Larger values fall in log-linear
+ * buckets: each power of two is split into 32 equal sub-buckets, so a
+ * recorded value is reported to within 1/32 (about 3%) of its true value. The
+ * histogram covers values up to about 18 minutes in 1 152 buckets; larger
+ * values are counted in the last bucket.
+ * <p>
+ * Recording a value is a few arithmetic operations and one atomic increment,
+ * with no allocation and no lock. Readers see a consistent count for each
+ * bucket but not necessarily a consistent snapshot across buckets while
+ * values are being recorded.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author jesse
+ */
+public final class LatencyHistogram {
+
+  /**
+   * The number of sub-bucket bits. Each power of two is split into 2^5
+   * sub-buckets.
+   */
+  private static final int SUB_BUCKET_BITS = 5;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  /**
+   * The highest power of two recorded, 2^40 ns.
+   */
+  private static final int MAX_EXPONENT = 39;
+  private static final long MAX_VALUE = (1L << MAX_EXPONENT + 1) - 1;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(bucketIndex(MAX_VALUE) + 1);
+  private final LongAdder sum = new LongAdder();
+  private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+  /**
+   * Record a latency.
+   *
+   * @param nanos the latency in nanoseconds. Negative values are recorded as
+   *              zero.
+   */
+  public void record(long nanos) {
+    long value = Math.min(Math.max(nanos, 0), MAX_VALUE);
+    buckets.incrementAndGet(bucketIndex(value));
+    sum.add(value);
+    max.accumulate(value);
+  }
+
+  /**
+   * @return the number of recorded values
+   */
+  public long getCount() {
+    long count = 0;
+    for (int i = 0; i < buckets.length(); i++) {
+      count += buckets.get(i);
+    }
+    return count;
+  }
+
+  /**
+   * Get the largest recorded value.
+   *
+   * @param unit the time unit
+   * @return the maximum in the indicated unit, zero if empty
+   */
+  public long getMax(TimeUnit unit) {
+    return unit.convert(max.get(), TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Get the mean of the recorded values.
+   *
+   * @param unit the time unit
+   * @return the mean in the indicated unit, zero if empty
+   */
+  public double getMean(TimeUnit unit) {
+    long count = getCount();
+    return count == 0 ? 0 : (double) sum.sum() / count / unit.toNanos(1);
+  }
+
+  /**
+   * Get the value at a percentile: the highest value that is equivalent,
+   * within the histogram precision, to the recorded value at or below which
+   * the percentage of recorded values falls.
+   *
+   * @param percentile the percentile, from 0 to 100
+   * @param unit       the time unit
+   * @return the value in the indicated unit, zero if empty
+   */
+  public long getValueAtPercentile(double percentile, TimeUnit unit) {
+    if (percentile < 0 || percentile > 100) {
+      throw new IllegalArgumentException("Percentile must be from 0 to 100");
+    }
+    long[] counts = new long[buckets.length()];
+    long total = 0;
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] = buckets.get(i);
+      total += counts[i];
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return unit.convert(Math.min(highestEquivalentValue(i), max.get()), TimeUnit.NANOSECONDS);
+      }
+    }
+    return unit.convert(max.get(), TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Clear all recorded values. Values recorded concurrently with a reset may
+   * or may not be cleared.
+   */
+  public void reset() {
+    for (int i = 0; i < buckets.length(); i++) {
+      buckets.set(i, 0);
+    }
+    sum.reset();
+    max.reset();
+  }
+
+  /**
+   * Get the bucket of a value.
+   *
+   * @param value a value from 0 to {@link #MAX_VALUE}
+   * @return the bucket index
+   */
+  static int bucketIndex(long value) {
+    if (value < SUB_BUCKET_COUNT) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> exponent - SUB_BUCKET_BITS);
+    return (exponent - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT + subBucket;
+  }
+
+  /**
+   * Get the largest value counted in a bucket.
+   *
+   * @param index the bucket index
+   * @return the largest value in the bucket
+   */
+  static long highestEquivalentValue(int index) {
+    if (index < SUB_BUCKET_COUNT) {
+      return index;
+    }
+    int shift = index / SUB_BUCKET_COUNT - 1;
+    long subBucket = index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+    return (subBucket + 1 << shift) - 1;
+  }
+
+  @Override
+  public String toString() {
+    return "count " + getCount()
+      + " mean " + Math.round(getMean(TimeUnit.NANOSECONDS)) + " ns"
+      + " p50 " + getValueAtPercentile(50, TimeUnit.NANOSECONDS) + " ns"
+      + " p99 " + getValueAtPercentile(99, TimeUnit.NANOSECONDS) + " ns"
+      + " max " + getMax(TimeUnit.NANOSECONDS) + " ns";
+  }
+}
@@ -0,0 +1,187 @@
+package ch.keybridge.gis.addressparser.us;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A per-parse work budget that bounds the time the regex engine may spend on
+ * a single address.
+ * <p>
+ * Some inputs (long strings without separators, repeated directions, names
+ * containing "and" or "at") make the compound address patterns backtrack
+ * catastrophically. A budgeted parser hands the regex matchers a view of the
+ * input that counts every character read. When the parse exceeds its step
+ * limit or its time limit the match is abandoned and the parser throws a
+ * {@link ParseTimeoutException}, releasing the calling thread.
+ * <p>
+ * The step count is checked on every character read; the clock is sampled
+ * every 1024 reads, so a timed out parse overruns its deadline by at most a
+ * few microseconds.
+ * <p>
+ * This class is thread-safe and one instance may be shared by any number of
+ * parsers. Each parse gets its own budget.
+ *
+ * @author jesse
+ */
+public final class ParseBudget {
+
+  /**
+   * The number of character reads between clock samples.
+   */
+  private static final int CLOCK_INTERVAL = 1024;
+
+  private final long timeoutNanos;
+  private final long maxSteps;
+
+  private final LongAdder parseCount = new LongAdder();
+  private final LongAdder timeoutCount = new LongAdder();
+
+  /**
+   * Construct a time-limited budget.
+   *
+   * @param timeout the maximum time allowed per parse
+   * @param unit    the timeout unit
+   */
+  public ParseBudget(long timeout, TimeUnit unit) {
+    this(timeout, unit, Long.MAX_VALUE);
+  }
+
+  /**
+   * Construct a time and step limited budget.
+   *
+   * @param timeout  the maximum time allowed per parse
+   * @param unit     the timeout unit
+   * @param maxSteps the maximum number of input characters the regex matchers
+   *                 may read per parse. A step limit is independent of the
+   *                 machine speed and therefore deterministic.
+   */
+  public ParseBudget(long timeout, TimeUnit unit, long maxSteps) {
+    if (timeout <= 0 || maxSteps <= 0) {
+      throw new IllegalArgumentException("Timeout and step limit must be positive");
+    }
+    this.timeoutNanos = unit.toNanos(timeout);
+    this.maxSteps = maxSteps;
+  }
+
+  /**
+   * Start the budget for one parse.
+   *
+   * @return a new tracker
+   */
+  Tracker start() {
+    parseCount.increment();
+    return new Tracker();
+  }
+
+  /**
+   * Get the maximum time allowed per parse.
+   *
+   * @param unit the time unit
+   * @return the timeout in the indicated unit
+   */
+  public long getTimeout(TimeUnit unit) {
+    return unit.convert(timeoutNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * @return the maximum number of characters read per parse
+   */
+  public long getMaxSteps() {
+    return maxSteps;
+  }
+
+  /**
+   * @return the number of budgeted parses started
+   */
+  public long getParseCount() {
+    return parseCount.sum();
+  }
+
+  /**
+   * @return the number of parses abandoned for exceeding the budget
+   */
+  public long getTimeoutCount() {
+    return timeoutCount.sum();
+  }
+
+  @Override
+  public String toString() {
+    return "ParseBudget " + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + " ms " + maxSteps + " steps"
+      + " parses " + getParseCount() + " timeouts " + getTimeoutCount();
+  }
+
+  /**
+   * The budget consumed by a single parse. Not thread-safe: a tracker belongs
+   * to the thread running the parse.
+   */
+  final class Tracker {
+
+    private final long startNanos = System.nanoTime();
+    private long steps;
+
+    /**
+     * Wrap a string for matching. All sequences wrapped by one tracker draw on
+     * the same budget.
+     *
+     * @param text the text to match
+     * @return a budgeted view of the text
+     */
+    CharSequence wrap(String text) {
+      return new BudgetedCharSequence(text, this);
+    }
+
+    /**
+     * Record one character read.
+     *
+     * @throws ParseTimeoutException if the budget is exhausted
+     */
+    void step() {
+      if (++steps > maxSteps
+        || (steps % CLOCK_INTERVAL == 0 && System.nanoTime() - startNanos > timeoutNanos)) {
+        timeoutCount.increment();
+        throw new ParseTimeoutException(System.nanoTime() - startNanos, steps);
+      }
+    }
+  }
+
+  /**
+   * A read-only view of a string that charges every character read to a
+   * tracker. The regex engine reads its input exclusively through
+   * {@link #charAt(int)}, so this is where a runaway match is stopped.
+   */
+  private static final class BudgetedCharSequence implements CharSequence {
+
+    private final String text;
+    private final Tracker tracker;
+
+    BudgetedCharSequence(String text, Tracker tracker) {
+      this.text = text;
+      this.tracker = tracker;
+    }
+
+    @Override
+    public int length() {
+      return text.length();
+    }
+
+    @Override
+    public char charAt(int index) {
+      tracker.step();
+      return text.charAt(index);
+    }
+
+    /**
+     * Returns a plain substring. Subsequences are only requested to extract
+     * matched groups, after the matching work is done.
+     */
+    @Override
+    public CharSequence subSequence(int start, int end) {
+      return text.substring(start, end);
+    }
+
+    @Override
+    public String toString() {
+      return text;
+    }
+  }
+}
@@ -0,0 +1,274 @@
+package ch.keybridge.gis.addressparser.us;
+
+import ch.keybridge.gis.addressparser.us.enumerated.AddressComponentKey;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A size-bounded, concurrent cache of parse results, keyed on the cleaned
+ * input address string.
+ * <p>
+ * Parsing is deterministic, so repeated inputs can skip the regex work
+ * entirely. The cache is split into independently locked segments, each an
+ * access-ordered (least recently used) map, so concurrent callers rarely
+ * contend. When a segment exceeds its share of the maximum weight the least
+ * recently used entries are evicted. A small cache has fewer segments, so
+ * that each share holds at least {@value #MIN_SEGMENT_WEIGHT} characters
+ * whatever the number of processors.
+ * <p>
+ * The weight of an entry is the number of characters in its key plus the
+ * number of characters in its parsed component values, a close proxy for its
+ * memory footprint.
+ * <p>
+ * Cached results are stored as private copies and each hit returns a new copy,
+ * so callers may modify the maps they receive.
+ *
+ * @author jesse
+ */
+public final class ParseCache {
+
+  /**
+   * Stored in place of a null parse result (input not recognized).
+   */
+  private static final ParsedAddress NO_RESULT = new ParsedAddress();
+  /**
+   * The smallest share of the maximum weight given to a segment. Smaller
+   * shares would evict entries as soon as they are cached.
+   */
+  static final long MIN_SEGMENT_WEIGHT = 4096;
+
+  private final Segment[] segments;
+  private final long maximumWeight;
+
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  private final LongAdder evictionCount = new LongAdder();
+
+  /**
+   * Construct a new cache.
+   *
+   * @param maximumWeight the maximum total weight (in characters) of all
+   *                      cached entries
+   */
+  public ParseCache(long maximumWeight) {
+    if (maximumWeight <= 0) {
+      throw new IllegalArgumentException("Maximum weight must be positive");
+    }
+    int count = Math.min(Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 4),
+                         (int) Long.highestOneBit(Math.max(1, Math.min(maximumWeight / MIN_SEGMENT_WEIGHT, 1 << 30))));
+    this.maximumWeight = maximumWeight;
+    this.segments = new Segment[count];
+    for (int i = 0; i < count; i++) {
+      segments[i] = new Segment(Math.max(1, maximumWeight / count));
+    }
+  }
+
+  /**
+   * Get the cached parse result for a cleaned address, parsing and caching it
+   * on a miss. The parser is invoked outside of any lock; concurrent misses
+   * for the same key may each parse, with the last result retained.
+   *
+   * @param cleanAddress             the cleaned address string
+   * @param engine                   the parsing engine
+   * @param autoCorrectStateSpelling the state spelling correction flag
+   * @param parser                   the function that parses a cleaned
+   *                                 address on a miss
+   * @return a new copy of the parse result, null if the address was not
+   *         recognized
+   */
+  Map<AddressComponentKey, String> get(String cleanAddress,
+                                       ParserEngine engine,
+                                       boolean autoCorrectStateSpelling,
+                                       Function<String, Map<AddressComponentKey, String>> parser) {
+    /**
+     * Results for the default configuration are keyed on the address alone.
+     * Other configurations are distinguished by a non-printing prefix.
+     */
+    int variant = engine.ordinal() * 2 + (autoCorrectStateSpelling ? 0 : 1);
+    String key = variant == 0 ? cleanAddress : (char) variant + cleanAddress;
+    Segment segment = segments[spread(key.hashCode()) & (segments.length - 1)];
+    ParsedAddress cached = segment.get(key);
+    if (cached != null) {
+      hitCount.increment();
+      return cached == NO_RESULT ? null : cached.clone();
+    }
+    missCount.increment();
+    Map<AddressComponentKey, String> result = parser.apply(cleanAddress);
+    ParsedAddress value = result == null ? NO_RESULT : new ParsedAddress(result);
+    evictionCount.add(segment.put(key, value, weigh(key, value)));
+    return result;
+  }
+
+  /**
+   * Weigh a cache entry.
+   */
+  private static int weigh(String key, Map<AddressComponentKey, String> value) {
+    int weight = key.length();
+    for (String component : value.values()) {
+      weight += component == null ? 0 : component.length();
+    }
+    return weight;
+  }
+
+  /**
+   * Spread the hash bits so that segments are selected by well mixed bits.
+   */
+  private static int spread(int h) {
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * Discard all cached entries. Counters are not reset.
+   */
+  public void clear() {
+    for (Segment segment : segments) {
+      segment.clear();
+    }
+  }
+
+  /**
+   * Reset the hit, miss and eviction counters. Cached entries are kept.
+   */
+  public void resetCounts() {
+    hitCount.reset();
+    missCount.reset();
+    evictionCount.reset();
+  }
+
+  /**
+   * @return the configured maximum weight
+   */
+  public long getMaximumWeight() {
+    return maximumWeight;
+  }
+
+  /**
+   * @return the current total weight of all cached entries
+   */
+  public long getWeight() {
+    long weight = 0;
+    for (Segment segment : segments) {
+      weight += segment.getWeight();
+    }
+    return weight;
+  }
+
+  /**
+   * @return the current number of cached entries
+   */
+  public long size() {
+    long size = 0;
+    for (Segment segment : segments) {
+      size += segment.size();
+    }
+    return size;
+  }
+
+  /**
+   * @return the number of lookups answered from the cache
+   */
+  public long getHitCount() {
+    return hitCount.sum();
+  }
+
+  /**
+   * @return the number of lookups that required a parse
+   */
+  public long getMissCount() {
+    return missCount.sum();
+  }
+
+  /**
+   * @return the number of entries evicted to respect the maximum weight
+   */
+  public long getEvictionCount() {
+    return evictionCount.sum();
+  }
+
+  /**
+   * @return the fraction of lookups answered from the cache, zero if there
+   *         have been no lookups
+   */
+  public double getHitRate() {
+    long hits = hitCount.sum();
+    long total = hits + missCount.sum();
+    return total == 0 ? 0 : (double) hits / total;
+  }
+
+  @Override
+  public String toString() {
+    return "ParseCache size " + size() + " weight " + getWeight() + "/" + maximumWeight
+      + " hits " + getHitCount() + " misses " + getMissCount() + " evictions " + getEvictionCount();
+  }
+
+  /**
+   * One independently locked, access-ordered cache segment.
+   */
+  private static class Segment {
+
+    private final LinkedHashMap<String, Entry> map = new LinkedHashMap<>(16, 0.75f, true);
+    private final long maximumWeight;
+    private long weight;
+
+    Segment(long maximumWeight) {
+      this.maximumWeight = maximumWeight;
+    }
+
+    synchronized ParsedAddress get(String key) {
+      Entry entry = map.get(key);
+      return entry == null ? null : entry.value;
+    }
+
+    /**
+     * Insert or replace an entry then evict least recently used entries until
+     * the segment is within its maximum weight.
+     *
+     * @return the number of entries evicted
+     */
+    synchronized int put(String key, ParsedAddress value, int entryWeight) {
+      Entry previous = map.put(key, new Entry(value, entryWeight));
+      if (previous != null) {
+        weight -= previous.weight;
+      }
+      weight += entryWeight;
+      int evicted = 0;
+      Iterator<Entry> iterator = map.values().iterator();
+      while (weight > maximumWeight && iterator.hasNext()) {
+        weight -= iterator.next().weight;
+        iterator.remove();
+        evicted++;
+      }
+      return evicted;
+    }
+
+    synchronized void clear() {
+      map.clear();
+      weight = 0;
+    }
+
+    synchronized long getWeight() {
+      return weight;
+    }
+
+    synchronized int size() {
+      return map.size();
+    }
+  }
+
+  /**
+   * A cached value and its weight.
+   */
+  private static class Entry {
+
+    private final ParsedAddress value;
+    private final int weight;
+
+    Entry(ParsedAddress value, int weight) {
+      this.value = value;
+      this.weight = weight;
+    }
+  }
+}
@@ -0,0 +1,30 @@
+package ch.keybridge.gis.addressparser.us;
+
+/**
+ * Enumerated list of the notable events of a parse: the corrections the parser
+ * applies on the way to a result, and parses without one.
+ *
+ * @author jesse
+ */
+public enum ParseEvent {
+
+  /**
+   * A spelled out state name was replaced with its abbreviation.
+   */
+  STATE_CORRECTION,
+  /**
+   * A misspelled state name, street type, direction or unit word was
+   * corrected and the address was matched again.
+   */
+  SPELLING_CORRECTION,
+  /**
+   * A city name containing a street designator was split from the street and
+   * the address was matched again.
+   */
+  DESIGNATOR_CORRECTION,
+  /**
+   * The parse returned no result. Unlike {@link ParseOutcome#NOT_RECOGNIZED}
+   * this includes cache hits and the token engine.
+   */
+  NO_RESULT;
+}
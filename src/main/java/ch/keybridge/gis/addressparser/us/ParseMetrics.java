@@ -0,0 +1,58 @@
+package ch.keybridge.gis.addressparser.us;
+
+/**
+ * Receives measurements from the parser: the route and outcome of each regex
+ * engine parse, the latency of each stage and events such as corrections.
+ * <p>
+ * Every method is called on the parsing thread, on the hot path, and must be
+ * thread-safe, cheap and non-blocking. All methods default to doing nothing,
+ * so an implementation only overrides what it needs.
+ * <p>
+ * {@link ParseStatistics} keeps counters and latency histograms in memory. To
+ * publish to a monitoring system such as Micrometer or JMX either implement
+ * this interface and forward each call to the monitoring system's own
+ * counters and timers, or register gauges that read a {@link ParseStatistics}.
+ * <p>
+ * The parser does not read the clock when its metrics are {@link #NONE}.
+ *
+ * @author jesse
+ */
+public interface ParseMetrics {
+
+  /**
+   * Metrics that record nothing. The default.
+   */
+  ParseMetrics NONE = new ParseMetrics() {
+    @Override
+    public String toString() {
+      return "ParseMetrics NONE";
+    }
+  };
+
+  /**
+   * Record a regex engine parse. Cache hits are not parsed and not recorded.
+   *
+   * @param route   the route chosen by the pre-classifier
+   * @param outcome the pattern that matched, or why none did
+   * @param nanos   the time spent matching, in nanoseconds
+   */
+  default void recordParse(ParseRoute route, ParseOutcome outcome, long nanos) {
+  }
+
+  /**
+   * Record the latency of a parse stage.
+   *
+   * @param stage the stage
+   * @param nanos the time spent in the stage, in nanoseconds
+   */
+  default void recordStage(ParseStage stage, long nanos) {
+  }
+
+  /**
+   * Record an event.
+   *
+   * @param event the event
+   */
+  default void recordEvent(ParseEvent event) {
+  }
+}
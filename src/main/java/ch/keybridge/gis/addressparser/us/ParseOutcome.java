@@ -0,0 +1,31 @@
+package ch.keybridge.gis.addressparser.us;
+
+/**
+ * Enumerated list of the outcomes of a regex engine parse: the pattern that
+ * matched, or why none did.
+ *
+ * @author jesse
+ */
+public enum ParseOutcome {
+
+  /**
+   * The street address pattern matched.
+   */
+  STREET_ADDRESS,
+  /**
+   * The intersection pattern matched.
+   */
+  INTERSECTION,
+  /**
+   * The city-state-zip pattern matched.
+   */
+  LAST_LINE,
+  /**
+   * No pattern matched. The parse returned null.
+   */
+  NOT_RECOGNIZED,
+  /**
+   * The parse exceeded its {@link ParseBudget} and was abandoned.
+   */
+  TIMED_OUT;
+}
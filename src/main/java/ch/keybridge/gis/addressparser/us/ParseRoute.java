@@ -0,0 +1,33 @@
+package ch.keybridge.gis.addressparser.us;
+
+/**
+ * Enumerated list of the routes a cleaned address takes through the regex
+ * engine. The route is chosen by a cheap scan of the address before any regex
+ * runs and names the first pattern tried; patterns that provably cannot match
+ * are skipped.
+ *
+ * @author jesse
+ */
+public enum ParseRoute {
+
+  /**
+   * The address has a possible house number. The street address, intersection
+   * and city-state-zip patterns are tried in order.
+   */
+  STREET_ADDRESS,
+  /**
+   * The address has no house number but has a corner word (and, at, &amp;,
+   * @). The intersection and city-state-zip patterns are tried in order.
+   */
+  INTERSECTION,
+  /**
+   * The address has neither a house number nor a corner word. Only the
+   * city-state-zip pattern is tried.
+   */
+  LAST_LINE,
+  /**
+   * The address ends with neither a zip code nor a state, which every pattern
+   * requires. No pattern is tried and the parse returns null.
+   */
+  NO_MATCH;
+}
@@ -0,0 +1,211 @@
+package ch.keybridge.gis.addressparser.us;
+
+import ch.keybridge.gis.addressparser.us.enumerated.AddressComponentKey;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * An incremental parse of an address that is typed one keystroke at a time,
+ * e.g. for autocomplete.
+ * <p>
+ * The session keeps the words of the text typed so far, each classified once
+ * against the dictionaries. A keystroke only re-reads the word being typed;
+ * the words before it are reused as they are and only the component
+ * assignment, a single pass over the classified words, is repeated. The cost
+ * of a keystroke therefore stays flat as the address grows instead of
+ * re-running the whole parse on the whole text.
+ * <p>
+ * Each call returns the best-so-far assignment of the text, the same result as
+ * the {@link ParserEngine#TOKEN} engine parsing the whole text without state
+ * spelling correction:
+ * <pre>
+ * new Parser(ParserEngine.TOKEN, null).parse(text, false)
+ * </pre> Spelled out state names are recognized by the token engine itself.
+ * <p>
+ * This class is not thread-safe. Use one session per input field.
+ *
+ * @author jesse
+ */
+public final class ParseSession {
+
+  /**
+   * The text typed so far.
+   */
+  private final StringBuilder text = new StringBuilder();
+  /**
+   * The raw words of the text: each run of characters that the clean up does
+   * not replace with a space.
+   */
+  private final TokenParser.Tokens tokens = new TokenParser.Tokens();
+  /**
+   * The index in the text of the first character of each raw word.
+   */
+  private int[] starts = new int[16];
+  /**
+   * True if the text ends inside the last raw word, which may still grow.
+   */
+  private boolean open;
+  /**
+   * The words passed to the parser: the raw words from the first to the last
+   * word character, as the clean up trims them.
+   */
+  private final TokenParser.Tokens words = new TokenParser.Tokens();
+  /**
+   * The parse of the text typed so far.
+   */
+  private Map<AddressComponentKey, String> result = new ParsedAddress();
+
+  /**
+   * Append characters to the text, e.g. a keystroke or a paste.
+   *
+   * @param chars the characters typed
+   * @return the best-so-far parse of the whole text
+   */
+  public Map<AddressComponentKey, String> append(CharSequence chars) {
+    int from = text.length();
+    text.append(chars);
+    scan(from);
+    return parse();
+  }
+
+  /**
+   * Replace the text, e.g. after a deletion or an edit. The words of the
+   * longest common prefix of the old and the new text are reused.
+   *
+   * @param newText the whole new text
+   * @return the best-so-far parse of the whole text
+   */
+  public Map<AddressComponentKey, String> update(CharSequence newText) {
+    int common = 0;
+    int max = Math.min(text.length(), newText.length());
+    while (common < max && text.charAt(common) == newText.charAt(common)) {
+      common++;
+    }
+    truncate(common);
+    text.append(newText, common, newText.length());
+    scan(common);
+    return parse();
+  }
+
+  /**
+   * Discard the text.
+   */
+  public void clear() {
+    truncate(0);
+    result = new ParsedAddress();
+  }
+
+  /**
+   * @return the text typed so far
+   */
+  public String getText() {
+    return text.toString();
+  }
+
+  /**
+   * Get the parse of the text typed so far. The map is the one returned by
+   * the last call to {@link #append} or {@link #update} and is not changed by
+   * later calls.
+   *
+   * @return the best-so-far parse, empty if nothing has been typed
+   */
+  public Map<AddressComponentKey, String> getResult() {
+    return result;
+  }
+
+  /**
+   * Cut the text to a length, removing the raw words after it. A word that
+   * reaches the end of the text is open and is read again by the next scan.
+   */
+  private void truncate(int length) {
+    if (length == text.length()) {
+      return;
+    }
+    int count = tokens.size();
+    while (count > 0 && starts[count - 1] >= length) {
+      count--;
+    }
+    tokens.truncate(count);
+    open = count > 0 && starts[count - 1] + tokens.get(count - 1).length() >= length;
+    text.setLength(length);
+  }
+
+  /**
+   * Split the text from an index into raw words. An open last word is
+   * removed and read again with the new characters.
+   */
+  private void scan(int from) {
+    int start = -1;
+    if (open) {
+      start = starts[tokens.size() - 1];
+      tokens.truncate(tokens.size() - 1);
+    }
+    for (int i = from; i < text.length(); i++) {
+      if (!AddressCanonicalizer.isCleanupChar(text.charAt(i))) {
+        if (start < 0) {
+          start = i;
+        }
+      } else if (start >= 0) {
+        addToken(start, i);
+        start = -1;
+      }
+    }
+    open = start >= 0;
+    if (open) {
+      addToken(start, text.length());
+    }
+  }
+
+  private void addToken(int start, int end) {
+    if (tokens.size() == starts.length) {
+      starts = Arrays.copyOf(starts, 2 * starts.length);
+    }
+    starts[tokens.size()] = start;
+    tokens.add(text.substring(start, end));
+  }
+
+  /**
+   * Parse the raw words. Leading and trailing non-word characters are trimmed
+   * as the clean up trims them; only a trimmed word is classified again.
+   */
+  private Map<AddressComponentKey, String> parse() {
+    int first = 0, last = tokens.size() - 1;
+    while (first <= last && !hasWordChar(tokens.get(first))) {
+      first++;
+    }
+    while (last >= first && !hasWordChar(tokens.get(last))) {
+      last--;
+    }
+    words.truncate(0);
+    for (int i = first; i <= last; i++) {
+      String word = tokens.get(i);
+      int start = 0, end = word.length();
+      if (i == first) {
+        while (!AddressCanonicalizer.isWordChar(word.charAt(start))) {
+          start++;
+        }
+      }
+      if (i == last) {
+        while (!AddressCanonicalizer.isWordChar(word.charAt(end - 1))) {
+          end--;
+        }
+      }
+      if (start == 0 && end == word.length()) {
+        words.add(tokens, i);
+      } else {
+        words.add(word.substring(start, end));
+      }
+    }
+    result = TokenParser.parse(words);
+    return result;
+  }
+
+  private static boolean hasWordChar(String word) {
+    for (int i = 0; i < word.length(); i++) {
+      if (AddressCanonicalizer.isWordChar(word.charAt(i))) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,42 @@
+package ch.keybridge.gis.addressparser.us;
+
+/**
+ * Enumerated list of the timed stages of an address parse.
+ *
+ * @author jesse
+ */
+public enum ParseStage {
+
+  /**
+   * The whole parse of a raw address: cleaning, then a cache lookup or the
+   * correction and match stages.
+   */
+  PARSE,
+  /**
+   * Cleaning the raw address: punctuation and white space.
+   */
+  CLEAN,
+  /**
+   * Replacing a spelled out state name with its abbreviation.
+   */
+  CORRECT_STATE,
+  /**
+   * Correcting the misspelled keywords a match missed, including matching the
+   * corrected address again.
+   */
+  CORRECT_SPELLING,
+  /**
+   * Matching the cleaned address with either engine. Not timed for cache
+   * hits. A parse matched again after a spelling correction records the match
+   * it returns.
+   */
+  MATCH,
+  /**
+   * Normalizing the parsed components.
+   */
+  NORMALIZE,
+  /**
+   * Formatting the normalized components into an address.
+   */
+  FORMAT;
+}
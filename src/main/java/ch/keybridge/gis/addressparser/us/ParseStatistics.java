@@ -0,0 +1,173 @@
+package ch.keybridge.gis.addressparser.us;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory {@link ParseMetrics}: a counter for each route and outcome, a
+ * counter for each event and a {@link LatencyHistogram} for each route and
+ * each stage.
+ * <p>
+ * Counters are {@link LongAdder}s, striped across threads, so recording does
+ * not contend. One instance may be shared by any number of parsers.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author jesse
+ */
+public final class ParseStatistics implements ParseMetrics {
+
+  private static final ParseRoute[] ROUTES = ParseRoute.values();
+  private static final ParseOutcome[] OUTCOMES = ParseOutcome.values();
+  private static final ParseStage[] STAGES = ParseStage.values();
+
+  /**
+   * The parse count of each route and outcome, at route ordinal times the
+   * number of outcomes plus outcome ordinal.
+   */
+  private final LongAdder[] parseCounts = adders(ROUTES.length * OUTCOMES.length);
+  private final LongAdder[] eventCounts = adders(ParseEvent.values().length);
+  private final LatencyHistogram[] routeLatency = histograms(ROUTES.length);
+  private final LatencyHistogram[] stageLatency = histograms(STAGES.length);
+
+  @Override
+  public void recordParse(ParseRoute route, ParseOutcome outcome, long nanos) {
+    parseCounts[route.ordinal() * OUTCOMES.length + outcome.ordinal()].increment();
+    routeLatency[route.ordinal()].record(nanos);
+  }
+
+  @Override
+  public void recordStage(ParseStage stage, long nanos) {
+    stageLatency[stage.ordinal()].record(nanos);
+  }
+
+  @Override
+  public void recordEvent(ParseEvent event) {
+    eventCounts[event.ordinal()].increment();
+  }
+
+  /**
+   * Get the number of parses that took a route and had an outcome.
+   *
+   * @param route   the route
+   * @param outcome the outcome
+   * @return the number of parses
+   */
+  public long getCount(ParseRoute route, ParseOutcome outcome) {
+    return parseCounts[route.ordinal() * OUTCOMES.length + outcome.ordinal()].sum();
+  }
+
+  /**
+   * Get the number of parses that took a route.
+   *
+   * @param route the route
+   * @return the number of parses
+   */
+  public long getCount(ParseRoute route) {
+    long count = 0;
+    for (ParseOutcome outcome : OUTCOMES) {
+      count += getCount(route, outcome);
+    }
+    return count;
+  }
+
+  /**
+   * Get the number of parses that had an outcome.
+   *
+   * @param outcome the outcome
+   * @return the number of parses
+   */
+  public long getCount(ParseOutcome outcome) {
+    long count = 0;
+    for (ParseRoute route : ROUTES) {
+      count += getCount(route, outcome);
+    }
+    return count;
+  }
+
+  /**
+   * Get the number of times an event occurred.
+   *
+   * @param event the event
+   * @return the number of events
+   */
+  public long getCount(ParseEvent event) {
+    return eventCounts[event.ordinal()].sum();
+  }
+
+  /**
+   * Get the matching latency of the parses that took a route.
+   *
+   * @param route the route
+   * @return the latency histogram
+   */
+  public LatencyHistogram getLatency(ParseRoute route) {
+    return routeLatency[route.ordinal()];
+  }
+
+  /**
+   * Get the latency of a parse stage.
+   *
+   * @param stage the stage
+   * @return the latency histogram
+   */
+  public LatencyHistogram getLatency(ParseStage stage) {
+    return stageLatency[stage.ordinal()];
+  }
+
+  /**
+   * Clear all counters and histograms.
+   */
+  public void reset() {
+    for (LongAdder adder : parseCounts) {
+      adder.reset();
+    }
+    for (LongAdder adder : eventCounts) {
+      adder.reset();
+    }
+    for (LatencyHistogram histogram : routeLatency) {
+      histogram.reset();
+    }
+    for (LatencyHistogram histogram : stageLatency) {
+      histogram.reset();
+    }
+  }
+
+  private static LongAdder[] adders(int count) {
+    LongAdder[] adders = new LongAdder[count];
+    for (int i = 0; i < count; i++) {
+      adders[i] = new LongAdder();
+    }
+    return adders;
+  }
+
+  private static LatencyHistogram[] histograms(int count) {
+    LatencyHistogram[] histograms = new LatencyHistogram[count];
+    for (int i = 0; i < count; i++) {
+      histograms[i] = new LatencyHistogram();
+    }
+    return histograms;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("ParseStatistics");
+    for (ParseRoute route : ROUTES) {
+      sb.append("\n  ").append(route).append(' ').append(getCount(route));
+      for (ParseOutcome outcome : OUTCOMES) {
+        long count = getCount(route, outcome);
+        if (count > 0) {
+          sb.append(' ').append(outcome).append('=').append(count);
+        }
+      }
+      sb.append(" p99 ").append(getLatency(route).getValueAtPercentile(99, TimeUnit.MICROSECONDS)).append(" us");
+    }
+    for (ParseStage stage : STAGES) {
+      sb.append("\n  ").append(stage).append(' ').append(getLatency(stage));
+    }
+    for (ParseEvent event : ParseEvent.values()) {
+      sb.append("\n  ").append(event).append(' ').append(getCount(event));
+    }
+    return sb.toString();
+  }
+}
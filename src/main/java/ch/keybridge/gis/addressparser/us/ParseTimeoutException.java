@@ -0,0 +1,48 @@
+package ch.keybridge.gis.addressparser.us;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thrown when a parse exceeds its {@link ParseBudget}. The partial match is
+ * discarded; the exception records how much work was done before the parse
+ * was abandoned.
+ *
+ * @author jesse
+ */
+public class ParseTimeoutException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  private final long elapsedNanos;
+  private final long steps;
+
+  /**
+   * Construct a new timeout exception.
+   *
+   * @param elapsedNanos the time spent before the parse was abandoned
+   * @param steps        the number of characters read before the parse was
+   *                     abandoned
+   */
+  public ParseTimeoutException(long elapsedNanos, long steps) {
+    super("Address parse timed out after " + TimeUnit.NANOSECONDS.toMicros(elapsedNanos) + " us and " + steps + " steps");
+    this.elapsedNanos = elapsedNanos;
+    this.steps = steps;
+  }
+
+  /**
+   * Get the time spent before the parse was abandoned.
+   *
+   * @param unit the time unit
+   * @return the elapsed time in the indicated unit
+   */
+  public long getElapsed(TimeUnit unit) {
+    return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * @return the number of characters read before the parse was abandoned
+   */
+  public long getSteps() {
+    return steps;
+  }
+}
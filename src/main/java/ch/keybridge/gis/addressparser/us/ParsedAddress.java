@@ -0,0 +1,331 @@
+package ch.keybridge.gis.addressparser.us;
+
+import ch.keybridge.gis.addressparser.us.enumerated.AddressComponentKey;
+import java.nio.CharBuffer;
+import java.util.*;
+
+/**
+ * A parsed address: one String slot per {@link AddressComponentKey}, indexed
+ * by the key ordinal.
+ * <p>
+ * This is the map type returned by the parser and the formatter. It behaves
+ * exactly like an {@code EnumMap<AddressComponentKey, String>} - iteration is
+ * in key order and a key may be present with a null value - but is a single
+ * small object holding a fixed array, so creating, copying and reading one
+ * involves no hashing and no per-entry objects.
+ * <p>
+ * The parser records each component as a slice - a start and end index - of
+ * the address it matched rather than as a substring. A slice is copied into a
+ * String only when the component is first read, so a caller that reads a few
+ * components pays nothing for the others. {@link #getSlice} reads a component
+ * without copying it at all.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @author jesse
+ */
+public final class ParsedAddress extends AbstractMap<AddressComponentKey, String> implements Cloneable {
+
+  private static final AddressComponentKey[] KEYS = AddressComponentKey.values();
+
+  /**
+   * The component values, indexed by key ordinal.
+   */
+  private String[] values;
+  /**
+   * A bit per key ordinal, set if the key is present.
+   */
+  private long present;
+  /**
+   * The text that sliced components index, null if there are none.
+   */
+  private String source;
+  /**
+   * The start and end index of each sliced component, at twice the key
+   * ordinal. Null until the first slice is set.
+   */
+  private int[] bounds;
+  /**
+   * A bit per key ordinal, set if the value is a slice of the source that has
+   * not been copied yet.
+   */
+  private long sliced;
+
+  /**
+   * Construct an empty parsed address.
+   */
+  public ParsedAddress() {
+    this.values = new String[KEYS.length];
+  }
+
+  /**
+   * Construct a parsed address holding a copy of the components of a map.
+   *
+   * @param map the address components
+   */
+  public ParsedAddress(Map<AddressComponentKey, String> map) {
+    this();
+    putAll(map);
+  }
+
+  /**
+   * Get a component value by key ordinal.
+   *
+   * @param ordinal the key ordinal
+   * @return the value, null if absent
+   */
+  String get(int ordinal) {
+    if ((sliced & 1L << ordinal) != 0) {
+      values[ordinal] = source.substring(bounds[2 * ordinal], bounds[2 * ordinal + 1]);
+      sliced &= ~(1L << ordinal);
+    }
+    return values[ordinal];
+  }
+
+  /**
+   * Test if a component value is present and not null, without copying it.
+   *
+   * @param ordinal the key ordinal
+   * @return true if the component has a value
+   */
+  boolean has(int ordinal) {
+    return values[ordinal] != null || (sliced & 1L << ordinal) != 0;
+  }
+
+  /**
+   * Set a component value by key ordinal.
+   *
+   * @param ordinal the key ordinal
+   * @param value   the value
+   */
+  void set(int ordinal, String value) {
+    values[ordinal] = value;
+    present |= 1L << ordinal;
+    sliced &= ~(1L << ordinal);
+  }
+
+  /**
+   * Set a component value to a slice of a source text. All slices of a parsed
+   * address index the same source.
+   *
+   * @param ordinal the key ordinal
+   * @param source  the source text
+   * @param start   the index of the first character
+   * @param end     the index after the last character
+   */
+  void setSlice(int ordinal, String source, int start, int end) {
+    if (this.source != null && this.source != source) {
+      throw new IllegalArgumentException("Slices must share one source");
+    }
+    if (bounds == null) {
+      bounds = new int[2 * KEYS.length];
+    }
+    this.source = source;
+    bounds[2 * ordinal] = start;
+    bounds[2 * ordinal + 1] = end;
+    values[ordinal] = null;
+    present |= 1L << ordinal;
+    sliced |= 1L << ordinal;
+  }
+
+  /**
+   * Get a component value without copying it. If the value has not been read
+   * as a String yet, the returned sequence is a read-only view of the text the
+   * address was parsed from.
+   *
+   * @param key the component key
+   * @return the value, null if absent
+   */
+  public CharSequence getSlice(AddressComponentKey key) {
+    int ordinal = key.ordinal();
+    return (sliced & 1L << ordinal) != 0
+           ? CharBuffer.wrap(source, bounds[2 * ordinal], bounds[2 * ordinal + 1])
+           : values[ordinal];
+  }
+
+  @Override
+  public String get(Object key) {
+    return key instanceof AddressComponentKey ? get(((AddressComponentKey) key).ordinal()) : null;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return key instanceof AddressComponentKey && (present & 1L << ((AddressComponentKey) key).ordinal()) != 0;
+  }
+
+  @Override
+  public String put(AddressComponentKey key, String value) {
+    String previous = get(key.ordinal());
+    set(key.ordinal(), value);
+    return previous;
+  }
+
+  @Override
+  public String remove(Object key) {
+    if (!containsKey(key)) {
+      return null;
+    }
+    int ordinal = ((AddressComponentKey) key).ordinal();
+    String previous = get(ordinal);
+    values[ordinal] = null;
+    present &= ~(1L << ordinal);
+    return previous;
+  }
+
+  @Override
+  public void putAll(Map<? extends AddressComponentKey, ? extends String> map) {
+    if (map instanceof ParsedAddress) {
+      ParsedAddress other = (ParsedAddress) map;
+      for (long bits = other.present; bits != 0; bits &= bits - 1) {
+        int ordinal = Long.numberOfTrailingZeros(bits);
+        if ((other.sliced & 1L << ordinal) != 0 && (source == null || source == other.source)) {
+          setSlice(ordinal, other.source, other.bounds[2 * ordinal], other.bounds[2 * ordinal + 1]);
+        } else {
+          set(ordinal, other.get(ordinal));
+        }
+      }
+    } else {
+      super.putAll(map);
+    }
+  }
+
+  @Override
+  public int size() {
+    return Long.bitCount(present);
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return present == 0;
+  }
+
+  @Override
+  public void clear() {
+    Arrays.fill(values, null);
+    present = 0;
+    sliced = 0;
+    source = null;
+  }
+
+  /**
+   * A view of the components, in key order. Entries write through to this
+   * parsed address.
+   */
+  @Override
+  public Set<Map.Entry<AddressComponentKey, String>> entrySet() {
+    return new AbstractSet<Map.Entry<AddressComponentKey, String>>() {
+      @Override
+      public Iterator<Map.Entry<AddressComponentKey, String>> iterator() {
+        return new EntryIterator();
+      }
+
+      @Override
+      public int size() {
+        return ParsedAddress.this.size();
+      }
+
+      @Override
+      public void clear() {
+        ParsedAddress.this.clear();
+      }
+    };
+  }
+
+  @Override
+  public ParsedAddress clone() {
+    try {
+      ParsedAddress clone = (ParsedAddress) super.clone();
+      clone.values = values.clone();
+      clone.bounds = bounds == null ? null : bounds.clone();
+      return clone;
+    } catch (CloneNotSupportedException ex) {
+      throw new AssertionError(ex);
+    }
+  }
+
+  /**
+   * Iterates the present keys in ordinal order.
+   */
+  private final class EntryIterator implements Iterator<Map.Entry<AddressComponentKey, String>> {
+
+    private int next = nextPresent(0);
+    private int last = -1;
+
+    private int nextPresent(int from) {
+      long bits = from >= 64 ? 0 : present & -1L << from;
+      return bits == 0 ? -1 : Long.numberOfTrailingZeros(bits);
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next != -1;
+    }
+
+    @Override
+    public Map.Entry<AddressComponentKey, String> next() {
+      if (next == -1) {
+        throw new NoSuchElementException();
+      }
+      last = next;
+      next = nextPresent(last + 1);
+      return new Entry(last);
+    }
+
+    @Override
+    public void remove() {
+      if (last == -1) {
+        throw new IllegalStateException();
+      }
+      ParsedAddress.this.remove(KEYS[last]);
+      last = -1;
+    }
+  }
+
+  /**
+   * A component entry, reading and writing through to its slot.
+   */
+  private final class Entry implements Map.Entry<AddressComponentKey, String> {
+
+    private final int ordinal;
+
+    Entry(int ordinal) {
+      this.ordinal = ordinal;
+    }
+
+    @Override
+    public AddressComponentKey getKey() {
+      return KEYS[ordinal];
+    }
+
+    @Override
+    public String getValue() {
+      return get(ordinal);
+    }
+
+    @Override
+    public String setValue(String value) {
+      String previous = get(ordinal);
+      set(ordinal, value);
+      return previous;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Map.Entry)) {
+        return false;
+      }
+      Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+      return getKey() == e.getKey() && Objects.equals(getValue(), e.getValue());
+    }
+
+    @Override
+    public int hashCode() {
+      return getKey().hashCode() ^ Objects.hashCode(getValue());
+    }
+
+    @Override
+    public String toString() {
+      return getKey() + "=" + getValue();
+    }
+  }
+}
@@ -3,73 +3,159 @@ package ch.keybridge.gis.addressparser.us;
 import ch.keybridge.gis.addressparser.us.Formatter;
 import ch.keybridge.gis.addressparser.us.enumerated.AddressComponentKey;
 import ch.keybridge.gis.addressparser.us.regex.AddressComponentPattern;
-import ch.keybridge.gis.addressparser.us.regex.NumberAndOrdinalPattern;
+import ch.keybridge.gis.addressparser.us.regex.KeywordAutomaton;
+import ch.keybridge.gis.addressparser.us.regex.RegexPatternRegistry;
 import ch.keybridge.gis.addressparser.us.regex.StateSpellingCorrector;
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
 import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Class to parse a free-text address into its components.
+ * <p>
+ * This class is stateless and thread-safe.
  *
  * @author jesse
  */
 public class Parser {
 
-  private static final Map<String, List<String>> C_MAP = new HashMap<>();
+  /**
+   * The parsing engine.
+   */
+  private final ParserEngine engine;
+  /**
+   * Optional cache of parse results. Null if caching is disabled.
+   */
+  private final ParseCache cache;
+  /**
+   * Optional per-parse work budget. Null if parses are unbounded.
+   */
+  private final ParseBudget budget;
+  /**
+   * The number of regex engine parses taken by each route.
+   */
+  private final LongAdder[] routeCounts = new LongAdder[ParseRoute.values().length];
+  /**
+   * Receives the parse measurements. Never null.
+   */
+  private final ParseMetrics metrics;
 
+  /**
+   * Construct a new parser. Reference data is loaded lazily and shared by all
+   * instances, so construction is free.
+   */
   public Parser() {
-    init();
+    this(ParserEngine.REGEX, null);
   }
 
-  private void init() {
-    BufferedReader r = null;
-    try {
-      r = new BufferedReader(new InputStreamReader(Parser.class.getClassLoader().getResourceAsStream("META-INF/address/exception-city.txt")));
-      String line;
-      /**
-       * Read and parse each line into an array of alternate city names. Lines
-       * are formatted thus:
-       * <p>
-       * NY -> WATKINS GLEN|CENTRAL BRIDGE|HOAG CORNERS|BEMIS HEIGHTS|ONTARIO ..
-       */
-      while ((line = r.readLine()) != null) {
-        /**
-         * Strip the state from the city names.
-         */
-        String[] items = line.split("\\s*->\\s*");
-        String state = items[0];
-        /**
-         * Split the city names into an array.
-         */
-        String[] cities = items[1].split("[|]");
-        /**
-         * Set the city map for the selected state.
-         */
-        C_MAP.put(state, Arrays.asList(cities));
-      }
-    } catch (Exception e) {
-      throw new Error("Unable to initalize exception_city", e);
-    } finally {
-      if (r != null) {
-        try {
-          r.close();
-        } catch (IOException e) {
-        }
-      }
+  /**
+   * Construct a new parser that caches its results.
+   *
+   * @param cache the parse result cache, null to disable caching
+   */
+  public Parser(ParseCache cache) {
+    this(ParserEngine.REGEX, cache);
+  }
+
+  /**
+   * Construct a new parser using the indicated engine.
+   *
+   * @param engine the parsing engine
+   * @param cache  the parse result cache, null to disable caching. A cache may
+   *               be shared by parsers using different engines.
+   */
+  public Parser(ParserEngine engine, ParseCache cache) {
+    this(engine, cache, null);
+  }
+
+  /**
+   * Construct a new parser using the indicated engine whose parses are bounded
+   * by a work budget. A parse that exceeds the budget throws a
+   * {@link ParseTimeoutException}; timed out parses are not cached.
+   *
+   * @param engine the parsing engine
+   * @param cache  the parse result cache, null to disable caching
+   * @param budget the per-parse work budget, null for unbounded parses. The
+   *               budget applies to the regex engine; the token engine runs
+   *               in linear time and needs none.
+   */
+  public Parser(ParserEngine engine, ParseCache cache, ParseBudget budget) {
+    this(engine, cache, budget, ParseMetrics.NONE);
+  }
+
+  /**
+   * Construct a new parser that reports its measurements.
+   *
+   * @param engine  the parsing engine
+   * @param cache   the parse result cache, null to disable caching
+   * @param budget  the per-parse work budget, null for unbounded parses
+   * @param metrics receives the route, outcome and latency of each parse.
+   *                {@link ParseMetrics#NONE} to disable.
+   */
+  public Parser(ParserEngine engine, ParseCache cache, ParseBudget budget, ParseMetrics metrics) {
+    this.engine = Objects.requireNonNull(engine, "engine");
+    this.cache = cache;
+    this.budget = budget;
+    this.metrics = Objects.requireNonNull(metrics, "metrics");
+    for (int i = 0; i < routeCounts.length; i++) {
+      routeCounts[i] = new LongAdder();
     }
   }
 
+  /**
+   * Get the parsing engine used by this parser.
+   *
+   * @return the parsing engine
+   */
+  public ParserEngine getEngine() {
+    return engine;
+  }
+
+  /**
+   * Get the parse result cache.
+   *
+   * @return the cache, null if caching is disabled
+   */
+  public ParseCache getCache() {
+    return cache;
+  }
+
+  /**
+   * Get the per-parse work budget.
+   *
+   * @return the budget, null if parses are unbounded
+   */
+  public ParseBudget getBudget() {
+    return budget;
+  }
+
+  /**
+   * Get the metrics that receive the parse measurements.
+   *
+   * @return the metrics, {@link ParseMetrics#NONE} if disabled
+   */
+  public ParseMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Get the number of addresses the regex engine has parsed along a route.
+   * Cache hits are not parsed and not counted.
+   *
+   * @param route the parse route
+   * @return the number of parses that took the route
+   */
+  public long getRouteCount(ParseRoute route) {
+    return routeCounts[route.ordinal()].sum();
+  }
+
   /**
    * Parses a raw address string, this delegates to
    * {@linkplain Parser#parse(String, boolean)} with autoCorrectStateSpelling
    * set to false
    *
    * @param rawAddr
-   * @return a map of parsed address components
+   * @return a map of parsed address components, a {@link ParsedAddress}
    */
   public Map<AddressComponentKey, String> parse(String rawAddr) throws Exception {
     return parse(rawAddr, true);
@@ -81,34 +167,181 @@ public class Parser {
    * @param rawAddr
    * @param autoCorrectStateSpelling swith on/off auto correction on state
    *                                 mis-spelling
-   * @return a map of parsed address components
+   * @return a map of parsed address components, a {@link ParsedAddress}
+   * @throws ParseTimeoutException if the parse exceeds the work budget
    */
   public Map<AddressComponentKey, String> parse(String rawAddr, boolean autoCorrectStateSpelling) throws Exception {
     if (rawAddr == null || rawAddr.isEmpty()) {
       throw new Exception("Address is empty or null");
     }
-    rawAddr = getCleanSttring(rawAddr);
-    if (autoCorrectStateSpelling) {
-      rawAddr = StateSpellingCorrector.nameToAbbreviation(rawAddr);
+    long start = now();
+    String cleanAddr = getCleanSttring(rawAddr);
+    recordStage(ParseStage.CLEAN, start);
+    Map<AddressComponentKey, String> addressComponentMap = cache == null
+                                                           ? parseCleanString(cleanAddr, autoCorrectStateSpelling)
+                                                           : cache.get(cleanAddr, engine, autoCorrectStateSpelling, c -> parseCleanString(c, autoCorrectStateSpelling));
+    if (addressComponentMap == null) {
+      metrics.recordEvent(ParseEvent.NO_RESULT);
+    }
+    recordStage(ParseStage.PARSE, start);
+    return addressComponentMap;
+  }
+
+  //<editor-fold defaultstate="collapsed" desc="Private Parsing Methods">
+  /**
+   * Parses a cleaned address string.
+   *
+   * @param rawAddr                  the address after
+   *                                 {@link #getCleanSttring(String)}
+   * @param autoCorrectStateSpelling swith on/off auto correction on state
+   *                                 mis-spelling. Also corrects misspelled
+   *                                 state names, street types and unit words
+   *                                 the parse missed, see
+   *                                 {@link SpellingCorrector}.
+   * @return a map of parsed address components
+   */
+  @SuppressWarnings("AssignmentToMethodParameter")
+  private Map<AddressComponentKey, String> parseCleanString(String rawAddr, boolean autoCorrectStateSpelling) {
+    /**
+     * One tracker for the whole parse, so a second match after a spelling
+     * correction draws on the same budget as the first.
+     */
+    ParseBudget.Tracker tracker = budget == null || engine == ParserEngine.TOKEN ? null : budget.start();
+    if (!autoCorrectStateSpelling) {
+      return record(match(rawAddr, tracker));
+    }
+    long start = now();
+    String corrected = StateSpellingCorrector.nameToAbbreviation(rawAddr);
+    recordStage(ParseStage.CORRECT_STATE, start);
+    if (corrected != rawAddr) {
+      metrics.recordEvent(ParseEvent.STATE_CORRECTION);
+    }
+    MatchResult match = match(corrected, tracker);
+    /**
+     * Correct the keywords the parse missed and match again. Nothing is
+     * corrected in most addresses, so most parses match once. The new match is
+     * rejected if it lost a component the first match found. Only the match
+     * returned is recorded; the second match is timed as part of the spelling
+     * correction.
+     */
+    start = now();
+    String respelled = SpellingCorrector.correct(corrected, match.components);
+    if (respelled != null) {
+      MatchResult respelledMatch = match(respelled, tracker);
+      if (respelledMatch.components != null && keepsComponents(match.components, respelledMatch.components)) {
+        metrics.recordEvent(ParseEvent.SPELLING_CORRECTION);
+        match = respelledMatch;
+      }
+    }
+    recordStage(ParseStage.CORRECT_SPELLING, start);
+    return record(match);
+  }
+
+  /**
+   * Record the route, outcome and match latency of the match a parse returns.
+   *
+   * @param match the match returned
+   * @return the parsed address components of the match
+   */
+  private Map<AddressComponentKey, String> record(MatchResult match) {
+    if (match.route != null) {
+      routeCounts[match.route.ordinal()].increment();
+    }
+    if (match.designatorCorrected) {
+      metrics.recordEvent(ParseEvent.DESIGNATOR_CORRECTION);
+    }
+    if (metrics != ParseMetrics.NONE) {
+      if (match.route != null) {
+        metrics.recordParse(match.route, match.outcome, match.nanos);
+      }
+      metrics.recordStage(ParseStage.MATCH, match.nanos);
+    }
+    return match.components;
+  }
+
+  /**
+   * Determine if a parse has every component of an earlier parse.
+   *
+   * @param first  the earlier parse, null if the address did not parse
+   * @param second the later parse
+   * @return true if no component of the first parse is missing in the second
+   */
+  private static boolean keepsComponents(Map<AddressComponentKey, String> first, Map<AddressComponentKey, String> second) {
+    if (first != null) {
+      for (AddressComponentKey key : AddressComponentKey.values()) {
+        if (first.get(key) != null && second.get(key) == null) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Match a cleaned and corrected address with the parsing engine.
+   *
+   * The match is not recorded, see {@link #record(MatchResult)}, unless it
+   * times out: a parse that times out returns no match.
+   *
+   * @param rawAddr the address to match
+   * @param tracker the parse budget tracker, null if parses are unbounded
+   * @return the match, with null components if the address was not recognized
+   */
+  private MatchResult match(String rawAddr, ParseBudget.Tracker tracker) {
+    long start = now();
+    if (engine == ParserEngine.TOKEN) {
+      Map<AddressComponentKey, String> addressComponentMap = TokenParser.parse(rawAddr);
+      return new MatchResult(null, null, addressComponentMap, false, elapsed(start));
     }
+    /**
+     * Route the address before running any regex. Patterns that cannot match
+     * are skipped.
+     */
+    ParseRoute route = AddressClassifier.classify(rawAddr);
+    if (route == ParseRoute.NO_MATCH) {
+      return new MatchResult(route, ParseOutcome.NOT_RECOGNIZED, null, false, elapsed(start));
+    }
+    try {
+      return matchRegex(rawAddr, route, start, tracker);
+    } catch (ParseTimeoutException ex) {
+      record(new MatchResult(route, ParseOutcome.TIMED_OUT, null, false, elapsed(start)));
+      throw ex;
+    }
+  }
+
+  /**
+   * Match a cleaned address against the regex patterns of its route.
+   *
+   * @param rawAddr the cleaned address
+   * @param route   the route of the address, not NO_MATCH
+   * @param start   the time the match started, see {@link #now()}
+   * @param tracker the parse budget tracker, null if parses are unbounded.
+   *                Every matcher reads the input through the same tracker, so
+   *                the budget covers the whole parse.
+   * @return the match, with null components if no pattern matched
+   */
+  private MatchResult matchRegex(String rawAddr, ParseRoute route, long start, ParseBudget.Tracker tracker) {
+    CharSequence input = track(tracker, rawAddr);
     /**
      * Match the street address
      */
-    Pattern STREET_ADDRESS = Pattern.compile(AddressComponentPattern.P_STREET_ADDRESS.getRegex());
-    Matcher m = STREET_ADDRESS.matcher(rawAddr);
+    Matcher m;
     Map<AddressComponentKey, String> addressComponentMap = null;
-    if (m.matches()) {
-      addressComponentMap = getAddrMap(m, AddressComponentPattern.P_STREET_ADDRESS.getNamedGroupMap());
+    ParseOutcome outcome = ParseOutcome.NOT_RECOGNIZED;
+    if (route == ParseRoute.STREET_ADDRESS
+      && (m = AddressComponentPattern.P_STREET_ADDRESS.getPattern().matcher(input)).matches()) {
+      addressComponentMap = getAddrMap(m, rawAddr, GroupKeys.STREET_ADDRESS);
+      outcome = ParseOutcome.STREET_ADDRESS;
       postProcess(addressComponentMap);
       String splitRawAddr = null;
       String line12sep = addressComponentMap.get(AddressComponentKey.TLID);//HACK!
       if (!line12sep.contains(",")
         && (splitRawAddr = designatorConfusingCitiesCorrection(addressComponentMap, rawAddr)) != null) {
-        m = STREET_ADDRESS.matcher(splitRawAddr);
+        m = AddressComponentPattern.P_STREET_ADDRESS.getPattern().matcher(track(tracker, splitRawAddr));
         if (m.matches()) {
-          addressComponentMap = getAddrMap(m, AddressComponentPattern.P_STREET_ADDRESS.getNamedGroupMap());
+          addressComponentMap = getAddrMap(m, splitRawAddr, GroupKeys.STREET_ADDRESS);
           addressComponentMap.remove(AddressComponentKey.TLID);//HACK!
-          return addressComponentMap;
+          return new MatchResult(route, outcome, addressComponentMap, true, elapsed(start));
         }
       }
       addressComponentMap.remove(AddressComponentKey.TLID);//HACK!
@@ -116,14 +349,15 @@ public class Parser {
     /**
      * Match the corner
      */
-    m = Pattern.compile(AddressComponentPattern.P_CORNER.getRegex()).matcher(rawAddr);
-    if (addressComponentMap == null && m.find()) {
+    if (addressComponentMap == null && route != ParseRoute.LAST_LINE
+      && AddressComponentPattern.P_CORNER.getPattern().matcher(input).find()) {
       /**
        * Match an intersection
        */
-      m = Pattern.compile(AddressComponentPattern.P_INTERSECTION.getRegex()).matcher(rawAddr);
+      m = AddressComponentPattern.P_INTERSECTION.getPattern().matcher(input);
       if (m.matches()) {
-        addressComponentMap = getAddrMap(m, AddressComponentPattern.P_INTERSECTION.getNamedGroupMap());
+        addressComponentMap = getAddrMap(m, rawAddr, GroupKeys.INTERSECTION);
+        outcome = ParseOutcome.INTERSECTION;
       }
     }
 
@@ -131,15 +365,53 @@ public class Parser {
       /**
        * Match the last line
        */
-      m = Pattern.compile(AddressComponentPattern.P_CSZ.getRegex()).matcher(rawAddr);
+      m = AddressComponentPattern.P_CSZ.getPattern().matcher(input);
       if (m.matches()) {
-        addressComponentMap = getAddrMap(m, AddressComponentPattern.P_CSZ.getNamedGroupMap());
+        addressComponentMap = getAddrMap(m, rawAddr, GroupKeys.CSZ);
+        outcome = ParseOutcome.LAST_LINE;
       }
     }
-    return addressComponentMap;
+    return new MatchResult(route, outcome, addressComponentMap, false, elapsed(start));
+  }
+
+  /**
+   * Read the clock for a metrics measurement.
+   *
+   * @return the current time in nanoseconds, zero if metrics are disabled
+   */
+  private long now() {
+    return metrics == ParseMetrics.NONE ? 0 : System.nanoTime();
+  }
+
+  /**
+   * Record the latency of a stage that started at a time.
+   */
+  private void recordStage(ParseStage stage, long start) {
+    if (metrics != ParseMetrics.NONE) {
+      metrics.recordStage(stage, System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Measure the time since a start time.
+   *
+   * @return the elapsed nanoseconds, zero if metrics are disabled
+   */
+  private long elapsed(long start) {
+    return metrics == ParseMetrics.NONE ? 0 : System.nanoTime() - start;
+  }
+
+  /**
+   * Wrap a string for budgeted matching.
+   *
+   * @param tracker the parse budget tracker, null if parses are unbounded
+   * @param text    the text to match
+   * @return the text to pass to the matcher
+   */
+  private static CharSequence track(ParseBudget.Tracker tracker, String text) {
+    return tracker == null ? text : tracker.wrap(text);
   }
 
-  //<editor-fold defaultstate="collapsed" desc="Private Parsing Methods">
   /**
    * Remove extra white space from within the address: extra spaces, etc.
    *
@@ -147,40 +419,92 @@ public class Parser {
    * @return
    */
   private String getCleanSttring(String rawAddrString) {
-    Pattern CLEANUP = Pattern.compile("^\\W+|\\W+$|[\\s\\p{Punct}&&[^\\)\\(#&'`]]");
-    return CLEANUP.matcher(rawAddrString).replaceAll(" ").replaceAll("\\s+", " ").trim();
+    return AddressCanonicalizer.clean(rawAddrString);
   }
 
   private void postProcess(Map<AddressComponentKey, String> m) {
     //these are (temporary?) hacks...
     if (m.get(AddressComponentKey.TYPE) == null && m.get(AddressComponentKey.STREET) != null
-      && Pattern.compile(NumberAndOrdinalPattern.STREET_DESIGNATOR).matcher(m.get(AddressComponentKey.STREET).toUpperCase()).matches()) {
+      && RegexPatternRegistry.STREET_DESIGNATOR.matcher(m.get(AddressComponentKey.STREET).toUpperCase()).matches()) {
       m.put(AddressComponentKey.TYPE, m.get(AddressComponentKey.STREET));
       m.put(AddressComponentKey.STREET, m.get(AddressComponentKey.PREDIR));
       m.put(AddressComponentKey.PREDIR, null);
     }
     if (m.get(AddressComponentKey.STATE) == null && m.get(AddressComponentKey.LINE2) != null
-      && Pattern.compile(NumberAndOrdinalPattern.US_STATES).matcher(m.get(AddressComponentKey.LINE2).toUpperCase()).matches()) {
+      && RegexPatternRegistry.US_STATES.matcher(m.get(AddressComponentKey.LINE2).toUpperCase()).matches()) {
       m.put(AddressComponentKey.STATE, m.get(AddressComponentKey.LINE2));
       m.put(AddressComponentKey.LINE2, null);
     }
   }
 
-  private Map<AddressComponentKey, String> getAddrMap(Matcher m, Map<Integer, String> groupMap) {
-    Map<AddressComponentKey, String> ret = new EnumMap<>(AddressComponentKey.class);
+  /**
+   * Collect the matched groups into a parsed address. Where several groups
+   * map to the same component the first matched group wins.
+   *
+   * Components are recorded as slices of the input; no substring is copied
+   * until a component is read.
+   *
+   * @param m         the matcher after a successful match
+   * @param input     the matched text
+   * @param groupKeys the component key ordinal of each group, by group index
+   * @return the parsed address
+   */
+  private ParsedAddress getAddrMap(Matcher m, String input, int[] groupKeys) {
+    ParsedAddress ret = new ParsedAddress();
     for (int i = 1; i <= m.groupCount(); i++) {
-      String name = groupMap.get(i);
-      AddressComponentKey comp = AddressComponentKey.valueOf(name);
-      if (ret.get(comp) == null) {
-        putIfNotNull(ret, comp, m.group(i));
+      if (!ret.has(groupKeys[i]) && m.start(i) != -1) {
+        ret.setSlice(groupKeys[i], input, m.start(i), m.end(i));
       }
     }
     return ret;
   }
 
-  private void putIfNotNull(Map<AddressComponentKey, String> m, AddressComponentKey ac, String v) {
-    if (v != null) {
-      m.put(ac, v);
+  /**
+   * The component key ordinal of each named group of the address patterns,
+   * indexed by group number. Initialized on first use.
+   */
+  private static final class GroupKeys {
+
+    private static final int[] STREET_ADDRESS = groupKeys(AddressComponentPattern.P_STREET_ADDRESS.getNamedGroupMap());
+    private static final int[] INTERSECTION = groupKeys(AddressComponentPattern.P_INTERSECTION.getNamedGroupMap());
+    private static final int[] CSZ = groupKeys(AddressComponentPattern.P_CSZ.getNamedGroupMap());
+
+    private static int[] groupKeys(Map<Integer, String> groupMap) {
+      int[] keys = new int[Collections.max(groupMap.keySet()) + 1];
+      for (Map.Entry<Integer, String> entry : groupMap.entrySet()) {
+        keys[entry.getKey()] = AddressComponentKey.valueOf(entry.getValue()).ordinal();
+      }
+      return keys;
+    }
+  }
+
+  /**
+   * The result of matching an address, recorded once the parse has chosen
+   * the match it returns.
+   */
+  private static final class MatchResult {
+
+    /**
+     * The route of a regex engine match, null for the token engine.
+     */
+    private final ParseRoute route;
+    private final ParseOutcome outcome;
+    /**
+     * The parsed address components, null if the address was not recognized.
+     */
+    private final Map<AddressComponentKey, String> components;
+    /**
+     * True if an exception city was split from the street designator.
+     */
+    private final boolean designatorCorrected;
+    private final long nanos;
+
+    private MatchResult(ParseRoute route, ParseOutcome outcome, Map<AddressComponentKey, String> components, boolean designatorCorrected, long nanos) {
+      this.route = route;
+      this.outcome = outcome;
+      this.components = components;
+      this.designatorCorrected = designatorCorrected;
+      this.nanos = nanos;
     }
   }
 
@@ -194,7 +518,7 @@ public class Parser {
     /**
      * Match the street designator
      */
-    Matcher m = Pattern.compile("\\b(?i:(?:" + NumberAndOrdinalPattern.STREET_DESIGNATOR + "))\\b").matcher(street);
+    Matcher m = RegexPatternRegistry.STREET_DESIGNATOR_WORD.matcher(street);
     if (m.find()) {
       String parsedstate = parsedLocation.get(AddressComponentKey.STATE);
       if (parsedstate == null) {
@@ -203,38 +527,22 @@ public class Parser {
           parsedstate = parsedcity;
         }
       }
-      String normalizedState = Formatter.normalizeState(parsedstate.toUpperCase(Locale.getDefault()));
-      String inputUpper = input.toUpperCase();
-      String ret = null;
-      Set<String> stateSet = new HashSet<>();
-      if (normalizedState != null) {
-        stateSet.add(normalizedState);
-      } else {
+      /**
+       * If no state has been found a confusing city of any state is accepted.
+       */
+      String normalizedState = parsedstate == null ? null : Formatter.normalizeState(parsedstate.toUpperCase(Locale.getDefault()));
+      int stateIdx = parsedstate == null ? input.length() : input.lastIndexOf(parsedstate);
+      KeywordAutomaton.Match city = ReferenceData.getExceptionCityIndex().findLast(input.toUpperCase(), normalizedState);
+      if (city != null && city.getEnd() >= stateIdx - 2) {
         /**
-         * if no state hat been found this needs to work much harder
+         * If the input has one of the city names that can confuse the parser
+         * this almost guaranteed to break the parser, help the parser by
+         * putting a comma separator before the city
          */
-        stateSet.addAll(C_MAP.keySet());
+        return input.substring(0, city.getStart()) + "," + input.substring(city.getStart());
       }
-      int stateIdx = parsedstate == null ? input.length() : input.lastIndexOf(parsedstate);
-      for (String state : stateSet) {
-        for (String s : C_MAP.get(state)) {
-          int idx;
-          if ((idx = inputUpper.lastIndexOf(s)) != -1) {
-            /**
-             * If the input has one of the city names that can confuse the
-             * parser this almost guaranteed to break the parser, help the
-             * parser by putting a comma separator before the city
-             */
-            if (idx + s.length() >= stateIdx - 2) {
-              return input.substring(0, idx) + "," + input.substring(idx);
-            }
-          }
-        }
-      }
-      return ret;
     }
     return null;
-
   }
   //</editor-fold>
 }
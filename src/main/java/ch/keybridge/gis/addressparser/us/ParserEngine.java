@@ -0,0 +1,22 @@
+package ch.keybridge.gis.addressparser.us;
+
+/**
+ * Enumerated list of the available address parsing engines.
+ *
+ * @author jesse
+ */
+public enum ParserEngine {
+
+  /**
+   * The original engine. Matches the cleaned address against the compound
+   * street address, intersection and city-state-zip regex patterns. Its
+   * running time can grow super-linearly on long or unusual inputs.
+   */
+  REGEX,
+  /**
+   * Splits the cleaned address into tokens once, classifies each token against
+   * the enumerated dictionaries (states, street types, directions, units) and
+   * assigns components in a single linear pass.
+   */
+  TOKEN;
+}
@@ -0,0 +1,350 @@
+package ch.keybridge.gis.addressparser.us;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reference data used by the US address parser and formatter.
+ * <p>
+ * The data is read from the class path the first time it is requested and is
+ * held in immutable maps and off-heap dictionaries thereafter. The data is
+ * read from the binary {@link ReferenceDataSnapshot} compiled at build time if
+ * it is present, otherwise it is parsed from the text resources. Loading uses
+ * the initialization-on-demand holder idiom: the JVM guarantees that the
+ * holder class is initialized exactly once and that the tables it publishes
+ * are visible to every thread. Constructing a {@link Parser} or
+ * {@link Formatter} therefore costs nothing and instances may share the
+ * reference data freely. {@link #reload()} replaces all tables at once.
+ *
+ * @author jesse
+ */
+public final class ReferenceData {
+
+  /**
+   * The class path resource containing, for each state, the city names that
+   * are easily confused with a street designator.
+   */
+  private static final String EXCEPTION_CITY_RESOURCE = "META-INF/address/exception-city.txt";
+  /**
+   * The class path resource containing the known city aliases for each zip
+   * code.
+   */
+  private static final String CITY_ALIAS_RESOURCE = "META-INF/address/city-alias.txt";
+
+  private ReferenceData() {
+  }
+
+  /**
+   * Get the city names that can confuse the parser, indexed by 2-character
+   * state abbreviation. e.g. "WHEAT RIDGE" in "CO".
+   *
+   * @return an immutable map of state abbreviation to city names
+   */
+  public static Map<String, List<String>> getExceptionCityMap() {
+    return TablesHolder.tables.exceptionCityMap;
+  }
+
+  /**
+   * Get the index over all exception city names, for finding the confusing
+   * cities in an address in a single pass.
+   *
+   * @return the exception city index
+   */
+  static ExceptionCityIndex getExceptionCityIndex() {
+    return TablesHolder.tables.exceptionCityIndex;
+  }
+
+  /**
+   * Get the city alias names, indexed by 2-character state abbreviation. Each
+   * state map is keyed on the alias name with all white space removed and
+   * contains the real city name.
+   * <p>
+   * The maps are decoded onto the heap on first request. Alias resolution
+   * uses the off-heap {@link CityAliasDictionary} and does not need them.
+   *
+   * @return an immutable map of state abbreviation to city alias map
+   */
+  public static Map<String, Map<String, String>> getCityAliasMap() {
+    return TablesHolder.tables.getCityAliasMap();
+  }
+
+  /**
+   * Get the index of 5-digit zip codes to their city, state and city alias
+   * names.
+   *
+   * @return the zip code index
+   */
+  public static ZipCodeIndex getZipCodeIndex() {
+    return TablesHolder.tables.zipCodeIndex;
+  }
+
+  /**
+   * Get the off-heap city alias dictionary.
+   *
+   * @return the city alias dictionary
+   */
+  static CityAliasDictionary getCityAliasDictionary() {
+    return TablesHolder.tables.cityAliasDictionary;
+  }
+
+  /**
+   * Get the approximate index of city and alias names, for resolving
+   * misspelled city names. Built on first request.
+   *
+   * @return the city name index
+   */
+  static CityNameIndex getCityNameIndex() {
+    return TablesHolder.tables.getCityNameIndex();
+  }
+
+  /**
+   * Get the number of exception city names, in all states.
+   *
+   * @return the number of exception cities
+   */
+  public static int getExceptionCityCount() {
+    return TablesHolder.tables.snapshot.getExceptionCityCount();
+  }
+
+  /**
+   * Get the number of city alias names, in all states.
+   *
+   * @return the number of city aliases
+   */
+  public static int getCityAliasCount() {
+    return TablesHolder.tables.snapshot.getCityAliasCount();
+  }
+
+  /**
+   * Get the time taken to load the reference data, on first use or on the
+   * last {@link #reload()}.
+   *
+   * @param unit the time unit
+   * @return the load time in the indicated unit
+   */
+  public static long getLoadTime(TimeUnit unit) {
+    return unit.convert(TablesHolder.tables.loadNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Get the time the reference data was loaded.
+   *
+   * @return the load time in milliseconds since the epoch
+   */
+  public static long getLoadedAt() {
+    return TablesHolder.tables.loadedAt;
+  }
+
+  /**
+   * Reload the reference data from the snapshot file or the class path, for
+   * example after the file named by {@link ReferenceDataSnapshot#FILE_PROPERTY}
+   * is replaced. The file must be replaced by renaming a new file over it,
+   * never rewritten in place: the old file is memory-mapped and truncating it
+   * crashes the JVM.
+   * <p>
+   * The new data is loaded in full before it replaces the old, so concurrent
+   * parses see either the old or the new data, never a mixture. Parses in
+   * progress finish with the data they started with.
+   */
+  public static void reload() {
+    synchronized (TablesHolder.class) {
+      TablesHolder.tables = Tables.load();
+    }
+  }
+
+  /**
+   * Lazy holder for the reference data tables. The tables are replaced as a
+   * whole by {@link #reload()}.
+   */
+  private static class TablesHolder {
+
+    private static volatile Tables tables = Tables.load();
+  }
+
+  /**
+   * The reference data tables built from one snapshot. If the snapshot is not
+   * present or cannot be read the text resources are parsed and compiled into
+   * an equivalent in-memory snapshot.
+   */
+  private static final class Tables {
+
+    private final ReferenceDataSnapshot snapshot;
+    private final Map<String, List<String>> exceptionCityMap;
+    private final ExceptionCityIndex exceptionCityIndex;
+    private final CityAliasDictionary cityAliasDictionary;
+    private final ZipCodeIndex zipCodeIndex;
+    private final long loadNanos;
+    private final long loadedAt;
+    /**
+     * The city alias map. Only decoded onto the heap if requested; a racing
+     * thread at worst decodes the same immutable map again.
+     */
+    private volatile Map<String, Map<String, String>> cityAliasMap;
+    /**
+     * The city name index. Only built if requested; a racing thread at worst
+     * builds the same immutable index again.
+     */
+    private volatile CityNameIndex cityNameIndex;
+
+    private Tables(ReferenceDataSnapshot snapshot, long startNanos) {
+      this.snapshot = snapshot;
+      this.exceptionCityMap = snapshot.getExceptionCityMap();
+      this.exceptionCityIndex = new ExceptionCityIndex(exceptionCityMap);
+      this.cityAliasDictionary = new CityAliasDictionary(snapshot);
+      this.zipCodeIndex = new ZipCodeIndex(snapshot);
+      this.loadNanos = System.nanoTime() - startNanos;
+      this.loadedAt = System.currentTimeMillis();
+    }
+
+    private Map<String, Map<String, String>> getCityAliasMap() {
+      Map<String, Map<String, String>> map = cityAliasMap;
+      if (map == null) {
+        cityAliasMap = map = snapshot.getCityAliasMap();
+      }
+      return map;
+    }
+
+    private CityNameIndex getCityNameIndex() {
+      CityNameIndex index = cityNameIndex;
+      if (index == null) {
+        cityNameIndex = index = new CityNameIndex(zipCodeIndex, cityAliasDictionary);
+      }
+      return index;
+    }
+
+    private static Tables load() {
+      long start = System.nanoTime();
+      return new Tables(loadSnapshot(), start);
+    }
+
+    private static ReferenceDataSnapshot loadSnapshot() {
+      try {
+        ReferenceDataSnapshot snapshot = ReferenceDataSnapshot.load();
+        if (snapshot != null) {
+          return snapshot;
+        }
+      } catch (IOException e) {
+        Logger.getLogger(ReferenceData.class.getName()).log(Level.WARNING, "Ignoring reference data snapshot: {0}", e.getMessage());
+      }
+      return ReferenceDataSnapshot.compile(readExceptionCities(), readCityAliases(), readZipCodes());
+    }
+  }
+
+  /**
+   * Read the exception city resource. Lines are formatted thus:
+   * <p>
+   * NY -> WATKINS GLEN|CENTRAL BRIDGE|HOAG CORNERS|BEMIS HEIGHTS|ONTARIO ..
+   *
+   * @return an immutable map of state abbreviation to city names
+   */
+  static Map<String, List<String>> readExceptionCities() {
+    Map<String, List<String>> map = new HashMap<>();
+    try (BufferedReader r = openResource(EXCEPTION_CITY_RESOURCE)) {
+      String line;
+      while ((line = r.readLine()) != null) {
+        /**
+         * Strip the state from the city names then split the city names into
+         * an array.
+         */
+        String[] items = line.split("\\s*->\\s*");
+        String[] cities = items[1].split("[|]");
+        map.put(items[0], Collections.unmodifiableList(Arrays.asList(cities)));
+      }
+    } catch (Exception e) {
+      throw new Error("Unable to initalize exception_city", e);
+    }
+    return Collections.unmodifiableMap(map);
+  }
+
+  /**
+   * Read the city alias resource. Lines are formatted thus:
+   * <p>
+   * 00501&lt;b&gt;HOLTSVILLE, NY=I R S SERVICE CENTER, NY|...
+   * <p>
+   * An alias is only recorded if it is not itself a real city in the same
+   * state.
+   *
+   * @return an immutable map of state abbreviation to city alias map
+   */
+  static Map<String, Map<String, String>> readCityAliases() {
+    Map<String, Map<String, String>> cityAliasMap = new HashMap<>();
+    try (BufferedReader bufferedReader = openResource(CITY_ALIAS_RESOURCE)) {
+      String line;
+      Map<String, Set<String>> allRealCitiesMap = new HashMap<>();
+      while ((line = bufferedReader.readLine()) != null) {
+        String[] items = line.split("\\s*=\\s*");
+        String[] cs = items[0].split("<b>")[1].split("\\s*,\\s*");
+        String city = cs[0].intern(), state = cs[1];
+        String[] alias = items[1].split("[|]");
+
+        Map<String, String> aliasMap = cityAliasMap.computeIfAbsent(state, k -> new HashMap<>());
+        Set<String> allRealCities = allRealCitiesMap.computeIfAbsent(state, k -> new HashSet<>());
+        for (String a : alias) {
+          String aa = a.split("\\s*,\\s*")[0];
+          allRealCities.add(city);
+          if (!allRealCities.contains(aa)) {
+            aliasMap.put(aa.replaceAll("\\s+", "").intern(), city);
+          }
+        }
+      }
+    } catch (IOException e) {
+      throw new Error("Unable to initalize City Alias Resolver", e);
+    }
+    Map<String, Map<String, String>> map = new HashMap<>();
+    for (Map.Entry<String, Map<String, String>> e : cityAliasMap.entrySet()) {
+      map.put(e.getKey(), Collections.unmodifiableMap(e.getValue()));
+    }
+    return Collections.unmodifiableMap(map);
+  }
+
+  /**
+   * Read the zip codes from the city alias resource. Each zip code maps to its
+   * city name, state abbreviation and the alias names of the city, in that
+   * order. e.g. 00501 to [HOLTSVILLE, NY, I R S SERVICE CENTER].
+   *
+   * @return a map of 5-digit zip code to city, state and alias names
+   */
+  static Map<Integer, List<String>> readZipCodes() {
+    Map<Integer, List<String>> zipCodeMap = new HashMap<>();
+    try (BufferedReader bufferedReader = openResource(CITY_ALIAS_RESOURCE)) {
+      String line;
+      while ((line = bufferedReader.readLine()) != null) {
+        String[] items = line.split("\\s*=\\s*");
+        String[] zcs = items[0].split("<b>");
+        String[] cs = zcs[1].split("\\s*,\\s*");
+        List<String> names = new ArrayList<>();
+        names.add(cs[0]);
+        names.add(cs[1]);
+        for (String a : items[1].split("[|]")) {
+          names.add(a.split("\\s*,\\s*")[0]);
+        }
+        zipCodeMap.put(Integer.valueOf(zcs[0]), names);
+      }
+    } catch (IOException e) {
+      throw new Error("Unable to initalize Zip Code Index", e);
+    }
+    return zipCodeMap;
+  }
+
+  /**
+   * Open a class path resource for reading.
+   *
+   * @param resource the resource name
+   * @return a reader on the resource
+   * @throws IOException if the resource is not found
+   */
+  private static BufferedReader openResource(String resource) throws IOException {
+    InputStream inputStream = ReferenceData.class.getClassLoader().getResourceAsStream(resource);
+    if (inputStream == null) {
+      throw new IOException("Resource not found: " + resource);
+    }
+    return new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,635 @@
+package ch.keybridge.gis.addressparser.us;
+
+import java.io.*;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.*;
+
+/**
+ * A compact binary snapshot of the exception city, city alias and zip code
+ * reference data.
+ * <p>
+ * The text resources take hundreds of milliseconds and several regex splits
+ * per line to parse. The snapshot is compiled from them once, at build time,
+ * by running {@link #main(String[])} in the {@code process-classes} phase, and
+ * is loaded with a single read and no parsing.
+ * <p>
+ * The snapshot is held outside the Java heap: a snapshot file is memory-mapped
+ * and a snapshot packaged in a jar is copied to a direct buffer. Several JVMs
+ * on one host mapping the same file (see {@link #FILE_PROPERTY}) share a
+ * single page-cache copy. The {@link CityAliasDictionary} and
+ * {@link ZipCodeIndex} answer lookups directly from the buffer.
+ * <p>
+ * All values are big-endian unsigned integers. The layout is:
+ * <pre>
+ * MAGIC VERSION WIDTH STRING_COUNT BYTE_COUNT
+ * OFFSET[STRING_COUNT + 1] BYTES[BYTE_COUNT]
+ * STATE_COUNT { STATE CITY_COUNT CITY[CITY_COUNT] }      exception cities
+ * STATE_COUNT { STATE ALIAS_COUNT { ALIAS CITY } }       city aliases
+ * ZIP_COUNT { ZIP CITY STATE FIRST_ALIAS }               zip codes
+ * ZIP_ALIAS_COUNT ZIP_ALIAS[ZIP_ALIAS_COUNT]
+ * </pre>
+ * The header and the counts are 32-bit. The string offsets and the zip codes
+ * are 24-bit. String references and {@code FIRST_ALIAS} are {@code WIDTH}
+ * bytes: 16-bit if the string table and the zip code aliases have no more than
+ * 65536 entries, as the US data set does, otherwise 24-bit.
+ * <p>
+ * Every string is stored once in a sorted string table of ASCII bytes and is
+ * referenced everywhere else by its index in the table. String {@code i}
+ * occupies bytes {@code OFFSET[i]} to {@code OFFSET[i + 1]}. An alias is
+ * stored with its white space, so it shares its string with the zip code
+ * aliases; the aliases of each state are sorted by name with the white space
+ * removed. Zip code records are sorted by zip code; the aliases of record
+ * {@code i} are {@code ZIP_ALIAS[FIRST_ALIAS]} up to the first alias of record
+ * {@code i + 1}.
+ * <p>
+ * Instances are immutable and thread-safe.
+ *
+ * @author jesse
+ */
+public final class ReferenceDataSnapshot {
+
+  /**
+   * The system property naming a snapshot file to memory-map in place of the
+   * snapshot on the class path.
+   * <p>
+   * The file is mapped read-only and must never be rewritten in place: a JVM
+   * that has it mapped crashes (SIGBUS) when the file is truncated. Replace it
+   * by writing a new file in the same directory and renaming it over the old
+   * one, as {@link #main(String[])} does; JVMs that mapped the old file keep
+   * reading it until they {@link ReferenceData#reload() reload}.
+   */
+  public static final String FILE_PROPERTY = "ch.keybridge.gis.addressparser.referenceData";
+  /**
+   * The class path resource containing the compiled snapshot.
+   */
+  static final String RESOURCE = "META-INF/address/reference-data.bin";
+  /**
+   * The file signature: "ADRF".
+   */
+  private static final int MAGIC = 0x41445246;
+  /**
+   * The layout version. Snapshots of any other version are ignored.
+   */
+  private static final int VERSION = 3;
+  /**
+   * The largest value of a 24-bit field.
+   */
+  private static final int MAX_24 = (1 << 24) - 1;
+
+  /**
+   * The snapshot. Read with absolute positions only.
+   */
+  private final ByteBuffer buffer;
+  /**
+   * The size of a string reference: 2 or 3 bytes.
+   */
+  private final int width;
+  private final int stringCount;
+  /**
+   * The buffer positions of the string offset array, the string bytes and
+   * each data section.
+   */
+  private final int offsetsPosition;
+  private final int bytesPosition;
+  private final int exceptionCityPosition;
+  private final int cityAliasPosition;
+  private final int zipCodePosition;
+  private final int zipAliasPosition;
+  /**
+   * Decoded strings shared by the lookup structures, by string index. Strings
+   * are immutable, so unsynchronized publication is safe: a racing thread at
+   * worst decodes the same string again.
+   */
+  private final String[] sharedStrings;
+
+  /**
+   * Validate a snapshot and locate its sections.
+   *
+   * @param buffer the snapshot bytes
+   * @throws IOException if the buffer does not hold a snapshot of the current
+   *                     version
+   */
+  private ReferenceDataSnapshot(ByteBuffer buffer) throws IOException {
+    try {
+      if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+        throw new IOException("Not a version " + VERSION + " reference data snapshot");
+      }
+      this.buffer = buffer;
+      this.width = buffer.getInt(8);
+      if (width != 2 && width != 3) {
+        throw new IOException("Corrupt reference data snapshot");
+      }
+      this.stringCount = buffer.getInt(12);
+      int byteCount = buffer.getInt(16);
+      this.offsetsPosition = 20;
+      this.bytesPosition = offsetsPosition + 3 * (stringCount + 1);
+      this.exceptionCityPosition = bytesPosition + byteCount;
+      int position = exceptionCityPosition + 4;
+      for (int s = buffer.getInt(exceptionCityPosition); s > 0; s--) {
+        position += width + 4 + width * buffer.getInt(position + width);
+      }
+      this.cityAliasPosition = position;
+      position += 4;
+      for (int s = buffer.getInt(cityAliasPosition); s > 0; s--) {
+        position += width + 4 + 2 * width * buffer.getInt(position + width);
+      }
+      this.zipCodePosition = position;
+      this.zipAliasPosition = position + 4 + getZipRecordSize() * buffer.getInt(zipCodePosition);
+      position = zipAliasPosition + 4 + width * buffer.getInt(zipAliasPosition);
+      this.sharedStrings = new String[stringCount];
+      if (position != buffer.limit() || getUnsigned24(offsetsPosition + 3 * stringCount) != byteCount) {
+        throw new IOException("Corrupt reference data snapshot");
+      }
+    } catch (RuntimeException e) {
+      throw new IOException("Corrupt reference data snapshot", e);
+    }
+  }
+
+  /**
+   * Load the snapshot. The file named by the {@link #FILE_PROPERTY} system
+   * property is used if set, otherwise the snapshot on the class path.
+   *
+   * @return the snapshot, null if no snapshot is present
+   * @throws IOException if the snapshot cannot be read or is not valid
+   */
+  static ReferenceDataSnapshot load() throws IOException {
+    String file = System.getProperty(FILE_PROPERTY);
+    if (file != null) {
+      return map(Paths.get(file));
+    }
+    URL url = ReferenceDataSnapshot.class.getClassLoader().getResource(RESOURCE);
+    if (url == null) {
+      return null;
+    }
+    if ("file".equals(url.getProtocol())) {
+      try {
+        return map(Paths.get(url.toURI()));
+      } catch (URISyntaxException e) {
+        throw new IOException("Invalid snapshot location " + url, e);
+      }
+    }
+    try (InputStream inputStream = url.openStream()) {
+      return read(inputStream);
+    }
+  }
+
+  /**
+   * Memory-map a snapshot file.
+   *
+   * @param path the snapshot file
+   * @return the snapshot
+   * @throws IOException if the file cannot be mapped or is not valid
+   */
+  static ReferenceDataSnapshot map(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      return new ReferenceDataSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  /**
+   * Read a snapshot from a stream into a direct buffer. The stream is read to
+   * the end but is not closed.
+   *
+   * @param inputStream the stream
+   * @return the snapshot
+   * @throws IOException if the snapshot cannot be read or is not valid
+   */
+  static ReferenceDataSnapshot read(InputStream inputStream) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 20);
+    byte[] chunk = new byte[1 << 16];
+    int read;
+    while ((read = inputStream.read(chunk)) != -1) {
+      bytes.write(chunk, 0, read);
+    }
+    ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.size());
+    buffer.put(bytes.toByteArray()).flip();
+    return new ReferenceDataSnapshot(buffer);
+  }
+
+  /**
+   * Compile reference data into an in-memory snapshot.
+   *
+   * @param exceptionCityMap the exception city names indexed by state
+   * @param cityAliasMap     the city alias maps indexed by state
+   * @param zipCodeMap       the city, state and alias names indexed by zip
+   *                         code
+   * @return the snapshot
+   */
+  static ReferenceDataSnapshot compile(Map<String, List<String>> exceptionCityMap,
+                                       Map<String, Map<String, String>> cityAliasMap,
+                                       Map<Integer, List<String>> zipCodeMap) {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 20);
+      write(exceptionCityMap, cityAliasMap, zipCodeMap, bytes);
+      return read(new ByteArrayInputStream(bytes.toByteArray()));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  //<editor-fold defaultstate="collapsed" desc="Buffer Access">
+  /**
+   * @return the snapshot buffer. Read with absolute positions only.
+   */
+  ByteBuffer getBuffer() {
+    return buffer;
+  }
+
+  /**
+   * Read a string reference or a zip code alias index.
+   *
+   * @param position the buffer position
+   * @return the unsigned value
+   */
+  int getReference(int position) {
+    return width == 2 ? buffer.getShort(position) & 0xffff : getUnsigned24(position);
+  }
+
+  /**
+   * Read a 24-bit value.
+   *
+   * @param position the buffer position
+   * @return the unsigned value
+   */
+  int getUnsigned24(int position) {
+    return (buffer.get(position) & 0xff) << 16 | (buffer.get(position + 1) & 0xff) << 8 | buffer.get(position + 2) & 0xff;
+  }
+
+  /**
+   * @return the size of a string reference: 2 or 3 bytes
+   */
+  int getWidth() {
+    return width;
+  }
+
+  /**
+   * @return the size of a zip code record: ZIP CITY STATE FIRST_ALIAS
+   */
+  int getZipRecordSize() {
+    return 3 + 3 * width;
+  }
+
+  /**
+   * @return the number of strings in the string table
+   */
+  int getStringCount() {
+    return stringCount;
+  }
+
+  /**
+   * @return the buffer position of the first byte of a string
+   */
+  int stringStart(int id) {
+    return bytesPosition + getUnsigned24(offsetsPosition + 3 * id);
+  }
+
+  /**
+   * @return the buffer position after the last byte of a string
+   */
+  int stringEnd(int id) {
+    return bytesPosition + getUnsigned24(offsetsPosition + 3 * (id + 1));
+  }
+
+  /**
+   * Decode a string from the string table.
+   *
+   * @param id the string index
+   * @return a new string
+   */
+  String getString(int id) {
+    int start = stringStart(id);
+    char[] chars = new char[stringEnd(id) - start];
+    for (int i = 0; i < chars.length; i++) {
+      chars[i] = (char) (buffer.get(start + i) & 0xff);
+    }
+    return new String(chars);
+  }
+
+  /**
+   * Decode a string from the string table without its white space.
+   *
+   * @param id the string index
+   * @return a new string
+   */
+  private String getStrippedString(int id) {
+    StringBuilder sb = new StringBuilder(stringEnd(id) - stringStart(id));
+    for (int position = stringStart(id); position < stringEnd(id); position++) {
+      char c = (char) (buffer.get(position) & 0xff);
+      if (!CityAliasDictionary.isWhitespace(c)) {
+        sb.append(c);
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Get a decoded string, decoding it on first use and retaining it.
+   *
+   * @param id the string index
+   * @return the string
+   */
+  String getSharedString(int id) {
+    String string = sharedStrings[id];
+    if (string == null) {
+      string = getString(id);
+      sharedStrings[id] = string;
+    }
+    return string;
+  }
+
+  /**
+   * @return the buffer position of the city alias section
+   */
+  int getCityAliasPosition() {
+    return cityAliasPosition;
+  }
+
+  /**
+   * @return the buffer position of the zip code section
+   */
+  int getZipCodePosition() {
+    return zipCodePosition;
+  }
+
+  /**
+   * @return the buffer position of the zip code alias array
+   */
+  int getZipAliasPosition() {
+    return zipAliasPosition;
+  }
+  //</editor-fold>
+
+  /**
+   * @return the number of exception city names, in all states
+   */
+  int getExceptionCityCount() {
+    int count = 0;
+    int position = exceptionCityPosition + 4;
+    for (int s = buffer.getInt(exceptionCityPosition); s > 0; s--) {
+      int cityCount = buffer.getInt(position + width);
+      count += cityCount;
+      position += width + 4 + width * cityCount;
+    }
+    return count;
+  }
+
+  /**
+   * @return the number of city alias names, in all states
+   */
+  int getCityAliasCount() {
+    int count = 0;
+    int position = cityAliasPosition + 4;
+    for (int s = buffer.getInt(cityAliasPosition); s > 0; s--) {
+      int aliasCount = buffer.getInt(position + width);
+      count += aliasCount;
+      position += width + 4 + 2 * width * aliasCount;
+    }
+    return count;
+  }
+
+  /**
+   * Decode the exception cities onto the heap.
+   *
+   * @return an immutable map of state abbreviation to exception city names
+   */
+  Map<String, List<String>> getExceptionCityMap() {
+    Map<String, List<String>> map = new HashMap<>();
+    int position = exceptionCityPosition + 4;
+    for (int s = buffer.getInt(exceptionCityPosition); s > 0; s--) {
+      String[] cities = new String[buffer.getInt(position + width)];
+      for (int i = 0; i < cities.length; i++) {
+        cities[i] = getString(getReference(position + width + 4 + width * i));
+      }
+      map.put(getString(getReference(position)), Collections.unmodifiableList(Arrays.asList(cities)));
+      position += width + 4 + width * cities.length;
+    }
+    return Collections.unmodifiableMap(map);
+  }
+
+  /**
+   * Decode the city aliases onto the heap, keyed on the alias name with all
+   * white space removed. Each city name is decoded once and shared by all its
+   * aliases.
+   *
+   * @return an immutable map of state abbreviation to city alias map
+   */
+  Map<String, Map<String, String>> getCityAliasMap() {
+    String[] cities = new String[stringCount];
+    Map<String, Map<String, String>> map = new HashMap<>();
+    int position = cityAliasPosition + 4;
+    for (int s = buffer.getInt(cityAliasPosition); s > 0; s--) {
+      int aliasCount = buffer.getInt(position + width);
+      Map<String, String> aliasMap = new HashMap<>(aliasCount * 4 / 3 + 1);
+      for (int i = 0; i < aliasCount; i++) {
+        int entry = position + width + 4 + 2 * width * i;
+        int city = getReference(entry + width);
+        if (cities[city] == null) {
+          cities[city] = getString(city);
+        }
+        aliasMap.put(getStrippedString(getReference(entry)), cities[city]);
+      }
+      map.put(getString(getReference(position)), Collections.unmodifiableMap(aliasMap));
+      position += width + 4 + 2 * width * aliasCount;
+    }
+    return Collections.unmodifiableMap(map);
+  }
+
+  /**
+   * Write a snapshot of the reference data.
+   *
+   * @param exceptionCityMap the exception city names indexed by state
+   * @param cityAliasMap     the city alias maps indexed by state
+   * @param zipCodeMap       the city, state and alias names indexed by zip
+   *                         code
+   * @param outputStream     the stream to write. Not closed.
+   * @throws IOException if a string is not ASCII, the data is too large for
+   *                     24-bit fields or the stream cannot be written
+   */
+  static void write(Map<String, List<String>> exceptionCityMap,
+                    Map<String, Map<String, String>> cityAliasMap,
+                    Map<Integer, List<String>> zipCodeMap,
+                    OutputStream outputStream) throws IOException {
+    /**
+     * The alias keys have no white space. Store each alias as it is spelled in
+     * the zip code aliases, so both share one string.
+     */
+    SortedMap<Integer, List<String>> zipCodes = new TreeMap<>(zipCodeMap);
+    Map<String, String> spelling = new HashMap<>();
+    int zipAliasCount = 0;
+    for (List<String> names : zipCodes.values()) {
+      for (String name : names) {
+        spelling.putIfAbsent(name.replaceAll("\\s+", ""), name);
+      }
+      zipAliasCount += names.size() - 2;
+    }
+    /**
+     * Build the sorted string table.
+     */
+    SortedSet<String> stringSet = new TreeSet<>();
+    for (Map.Entry<String, List<String>> entry : exceptionCityMap.entrySet()) {
+      stringSet.add(entry.getKey());
+      stringSet.addAll(entry.getValue());
+    }
+    for (Map.Entry<String, Map<String, String>> entry : cityAliasMap.entrySet()) {
+      stringSet.add(entry.getKey());
+      for (String alias : entry.getValue().keySet()) {
+        stringSet.add(spelling.getOrDefault(alias, alias));
+      }
+      stringSet.addAll(entry.getValue().values());
+    }
+    for (List<String> names : zipCodes.values()) {
+      stringSet.addAll(names);
+    }
+    Map<String, Integer> index = new HashMap<>();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    int[] offsets = new int[stringSet.size() + 1];
+    for (String string : stringSet) {
+      /**
+       * Lookups compare characters directly against the stored bytes, which
+       * is only valid for single byte characters.
+       */
+      for (int i = 0; i < string.length(); i++) {
+        if (string.charAt(i) > 0x7f) {
+          throw new IOException("Reference data must be ASCII: " + string);
+        }
+      }
+      offsets[index.size()] = bytes.size();
+      index.put(string, index.size());
+      bytes.write(string.getBytes(StandardCharsets.US_ASCII));
+    }
+    offsets[stringSet.size()] = bytes.size();
+    /**
+     * The largest reference is the last string or the end of the zip code
+     * aliases.
+     */
+    int references = Math.max(stringSet.size(), zipAliasCount + 1);
+    int width = references <= 1 << 16 ? 2 : 3;
+    if (bytes.size() > MAX_24 || references > 1 << 24) {
+      throw new IOException("Reference data too large for a snapshot");
+    }
+
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream));
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeInt(width);
+    out.writeInt(stringSet.size());
+    out.writeInt(bytes.size());
+    for (int offset : offsets) {
+      writeUnsigned(out, offset, 3);
+    }
+    bytes.writeTo(out);
+    /**
+     * Exception cities, in their original order.
+     */
+    out.writeInt(exceptionCityMap.size());
+    for (Map.Entry<String, List<String>> entry : new TreeMap<>(exceptionCityMap).entrySet()) {
+      writeUnsigned(out, index.get(entry.getKey()), width);
+      out.writeInt(entry.getValue().size());
+      for (String city : entry.getValue()) {
+        writeUnsigned(out, index.get(city), width);
+      }
+    }
+    /**
+     * City aliases, sorted by alias without white space.
+     */
+    out.writeInt(cityAliasMap.size());
+    for (Map.Entry<String, Map<String, String>> entry : new TreeMap<>(cityAliasMap).entrySet()) {
+      writeUnsigned(out, index.get(entry.getKey()), width);
+      out.writeInt(entry.getValue().size());
+      for (Map.Entry<String, String> alias : new TreeMap<>(entry.getValue()).entrySet()) {
+        writeUnsigned(out, index.get(spelling.getOrDefault(alias.getKey(), alias.getKey())), width);
+        writeUnsigned(out, index.get(alias.getValue()), width);
+      }
+    }
+    /**
+     * Zip codes, sorted by zip code, followed by their aliases.
+     */
+    List<Integer> zipAliases = new ArrayList<>(zipAliasCount);
+    out.writeInt(zipCodes.size());
+    for (Map.Entry<Integer, List<String>> entry : zipCodes.entrySet()) {
+      if (entry.getKey() < 0 || entry.getKey() > MAX_24) {
+        throw new IOException("Invalid zip code " + entry.getKey());
+      }
+      writeUnsigned(out, entry.getKey(), 3);
+      writeUnsigned(out, index.get(entry.getValue().get(0)), width);
+      writeUnsigned(out, index.get(entry.getValue().get(1)), width);
+      writeUnsigned(out, zipAliases.size(), width);
+      for (String alias : entry.getValue().subList(2, entry.getValue().size())) {
+        zipAliases.add(index.get(alias));
+      }
+    }
+    out.writeInt(zipAliases.size());
+    for (int alias : zipAliases) {
+      writeUnsigned(out, alias, width);
+    }
+    out.flush();
+  }
+
+  /**
+   * Write the low bytes of a value, big-endian.
+   *
+   * @param out   the stream
+   * @param value the unsigned value
+   * @param size  the number of bytes to write
+   */
+  private static void writeUnsigned(DataOutputStream out, int value, int size) throws IOException {
+    for (int shift = 8 * (size - 1); shift >= 0; shift -= 8) {
+      out.write(value >>> shift);
+    }
+  }
+
+  /**
+   * Compile the reference data text resources into a snapshot file. Run at
+   * build time; see the project pom.
+   * <p>
+   * The snapshot is written to a temporary file in the same directory, which
+   * is then atomically renamed over the output file, so a JVM that has the old
+   * file mapped is never exposed to a truncated file. The new file keeps the
+   * permissions of the file it replaces, or is made readable by all, so the
+   * JVMs of other users can map it.
+   *
+   * @param args the snapshot file to write
+   * @throws IOException if the resources cannot be read or the file written
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length != 1) {
+      System.err.println("Usage: ReferenceDataSnapshot <output file>");
+      System.exit(1);
+    }
+    Path path = Paths.get(args[0]);
+    if (path.getParent() != null) {
+      Files.createDirectories(path.getParent());
+    }
+    Path directory = path.toAbsolutePath().getParent();
+    Path temporary = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+    try {
+      try (OutputStream outputStream = Files.newOutputStream(temporary)) {
+        write(ReferenceData.readExceptionCities(), ReferenceData.readCityAliases(), ReferenceData.readZipCodes(), outputStream);
+      }
+      /**
+       * A temporary file is readable by its owner only, and the rename keeps
+       * its permissions.
+       */
+      if (Files.getFileAttributeView(temporary, PosixFileAttributeView.class) != null) {
+        Files.setPosixFilePermissions(temporary, Files.exists(path)
+                                                 ? Files.getPosixFilePermissions(path)
+                                                 : PosixFilePermissions.fromString("rw-r--r--"));
+      }
+      Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+    System.out.println("Wrote reference data snapshot " + path + " (" + Files.size(path) + " bytes)");
+  }
+}
@@ -0,0 +1,267 @@
+package ch.keybridge.gis.addressparser.us;
+
+import ch.keybridge.gis.addressparser.us.enumerated.AddressComponentKey;
+import ch.keybridge.gis.addressparser.us.enumerated.FuzzyLookup;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Corrects misspelled state names, street types and living unit words using
+ * the {@link FuzzyLookup} indexes.
+ * <p>
+ * A word is only corrected where a parse left the corresponding component
+ * empty, since a misspelled keyword is otherwise read as part of a name:
+ * <ul>
+ * <li>the state: the last one or two words before the ZIP code, if the parse
+ * found no state;</li>
+ * <li>the street type: the last word of a street of several words, if the
+ * parse found no street type. The word after the street is the city and is
+ * never corrected;</li>
+ * <li>the living unit: the first word of the second address line.</li>
+ * </ul>
+ * Correcting any near-keyword anywhere would turn names into keywords, e.g.
+ * "MAIN" into MAINE.
+ * <p>
+ * Directions are not corrected: the first word of a parsed street is as likely
+ * a name near a direction as a misspelled one, e.g. "YOUTH CENTER RD" or "NORTE
+ * VISTA DR", and a parse that found the street lost nothing.
+ * <p>
+ * Only the corrected words are replaced; the rest of the address keeps the
+ * case it was given in. A parse that misses none of these components, as most
+ * do, is checked without splitting the address into words.
+ *
+ * @author jesse
+ */
+final class SpellingCorrector {
+
+  private SpellingCorrector() {
+  }
+
+  /**
+   * Correct the spelling of the keywords a parse missed.
+   *
+   * @param address the cleaned address
+   * @param parsed  the parse of the address, null if it did not parse
+   * @return the corrected address, null if no word was corrected
+   */
+  static String correct(String address, Map<AddressComponentKey, String> parsed) {
+    if (!isCorrectable(parsed)) {
+      return null;
+    }
+    Words words = new Words(address);
+    boolean corrected = false;
+    if (parsed == null || parsed.get(AddressComponentKey.STATE) == null) {
+      corrected |= correctState(words);
+    }
+    if (parsed == null) {
+      return corrected ? words.toString() : null;
+    }
+    String[] street = split(parsed.get(AddressComponentKey.STREET));
+    int streetIndex = words.indexOf(street, 0);
+    if (streetIndex >= 0) {
+      int streetEnd = streetIndex + street.length;
+      if (parsed.get(AddressComponentKey.TYPE) == null) {
+        corrected |= street.length > 1 && words.correct(streetEnd - 1, FuzzyLookup.getSTREET_TYPE());
+      }
+      String[] line2 = split(parsed.get(AddressComponentKey.LINE2));
+      int line2Index = words.indexOf(line2, streetEnd);
+      if (line2Index >= 0) {
+        corrected |= words.correct(line2Index, FuzzyLookup.getADDRESS_UNIT());
+      }
+    }
+    return corrected ? words.toString() : null;
+  }
+
+  /**
+   * Determine if a parse misses a component this class can fill: the state,
+   * the street type of a street of several words or a known living unit word
+   * at the start of the second address line.
+   *
+   * @param parsed the parse of the address, null if it did not parse
+   * @return true if the address may have a word to correct
+   */
+  private static boolean isCorrectable(Map<AddressComponentKey, String> parsed) {
+    if (parsed == null || parsed.get(AddressComponentKey.STATE) == null) {
+      return true;
+    }
+    String street = parsed.get(AddressComponentKey.STREET);
+    if (parsed.get(AddressComponentKey.TYPE) == null && street != null
+      && wordStart(street, wordEnd(street, wordStart(street, 0))) < street.length()) {
+      return true;
+    }
+    String line2 = parsed.get(AddressComponentKey.LINE2);
+    if (line2 == null) {
+      return false;
+    }
+    int start = wordStart(line2, 0);
+    int end = wordEnd(line2, start);
+    return FuzzyLookup.getMaxDistance(end - start) > 0
+      && Character.isLetter(line2.charAt(start))
+      && !FuzzyLookup.getADDRESS_UNIT().contains(line2.substring(start, end).toUpperCase(Locale.ENGLISH));
+  }
+
+  /**
+   * @return the index of the first letter or digit at or after an index, the
+   *         text length if there is none
+   */
+  private static int wordStart(String text, int from) {
+    while (from < text.length() && !Character.isLetterOrDigit(text.charAt(from))) {
+      from++;
+    }
+    return from;
+  }
+
+  /**
+   * @return the index after the letters and digits at an index
+   */
+  private static int wordEnd(String text, int from) {
+    while (from < text.length() && Character.isLetterOrDigit(text.charAt(from))) {
+      from++;
+    }
+    return from;
+  }
+
+  /**
+   * Correct the state: the one or two words at the end of the address or before
+   * the ZIP code. A two word name is preferred, e.g. WEST VIRGINIA rather than
+   * VIRGINIA.
+   */
+  private static boolean correctState(Words words) {
+    int end = words.size();
+    if (end > 0 && Character.isDigit(words.get(end - 1).charAt(0))) {
+      end--;
+    }
+    if (end < 2 || FuzzyLookup.getSTATE().contains(words.get(end - 1))) {
+      return false;
+    }
+    if (end > 2 && !FuzzyLookup.getSTATE().contains(words.get(end - 2) + " " + words.get(end - 1))) {
+      String state = FuzzyLookup.getSTATE().find(words.get(end - 2) + " " + words.get(end - 1));
+      if (state != null) {
+        words.replace(end - 2, 2, state);
+        return true;
+      }
+    }
+    return words.correct(end - 1, FuzzyLookup.getSTATE());
+  }
+
+  /**
+   * Split a component into upper case words.
+   *
+   * @return the words, empty if the component is null
+   */
+  private static String[] split(String component) {
+    if (component == null) {
+      return new String[0];
+    }
+    return new Words(component).upper.toArray(new String[0]);
+  }
+
+  /**
+   * The words of an address with the separators between them. Words are
+   * compared in upper case.
+   */
+  private static final class Words {
+
+    private final List<String> words = new ArrayList<>();
+    private final List<String> upper = new ArrayList<>();
+    /**
+     * The separator before each word, and after the last word.
+     */
+    private final List<String> separators = new ArrayList<>();
+
+    private Words(String text) {
+      int start = 0;
+      int i = 0;
+      while (i < text.length()) {
+        if (Character.isLetterOrDigit(text.charAt(i))) {
+          int end = i;
+          while (end < text.length() && Character.isLetterOrDigit(text.charAt(end))) {
+            end++;
+          }
+          separators.add(text.substring(start, i));
+          words.add(text.substring(i, end));
+          upper.add(text.substring(i, end).toUpperCase(Locale.ENGLISH));
+          start = i = end;
+        } else {
+          i++;
+        }
+      }
+      separators.add(text.substring(start));
+    }
+
+    private int size() {
+      return words.size();
+    }
+
+    /**
+     * @return the upper case word
+     */
+    private String get(int index) {
+      return upper.get(index);
+    }
+
+    /**
+     * Find a sequence of words.
+     *
+     * @return the index of the first word, -1 if not found or empty
+     */
+    private int indexOf(String[] sequence, int from) {
+      if (sequence.length == 0) {
+        return -1;
+      }
+      for (int i = from; i + sequence.length <= words.size(); i++) {
+        int j = 0;
+        while (j < sequence.length && upper.get(i + j).equals(sequence[j])) {
+          j++;
+        }
+        if (j == sequence.length) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * Replace a misspelled word with the nearest key of an index.
+     *
+     * @return true if the word was replaced
+     */
+    private boolean correct(int index, FuzzyLookup lookup) {
+      if (index >= words.size() || !Character.isLetter(words.get(index).charAt(0))) {
+        return false;
+      }
+      String key = lookup.find(upper.get(index));
+      if (key == null) {
+        return false;
+      }
+      replace(index, 1, key);
+      return true;
+    }
+
+    /**
+     * Replace a number of words with an upper case keyword, in proper case
+     * unless the first word replaced is in upper case.
+     */
+    private void replace(int index, int count, String keyword) {
+      String word = words.get(index);
+      words.set(index, word.equals(upper.get(index)) ? keyword : Formatter.toProperCase(keyword));
+      upper.set(index, keyword);
+      for (int i = 1; i < count; i++) {
+        words.remove(index + 1);
+        upper.remove(index + 1);
+        separators.remove(index + 1);
+      }
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < words.size(); i++) {
+        sb.append(separators.get(i)).append(words.get(i));
+      }
+      return sb.append(separators.get(words.size())).toString();
+    }
+  }
+}
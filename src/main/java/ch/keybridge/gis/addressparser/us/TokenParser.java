@@ -0,0 +1,635 @@
+package ch.keybridge.gis.addressparser.us;
+
+import ch.keybridge.gis.addressparser.us.enumerated.AddressComponentKey;
+import ch.keybridge.gis.addressparser.us.enumerated.EnumeratedLookup;
+import java.util.*;
+
+/**
+ * Token based address parser. This is the {@link ParserEngine#TOKEN} engine.
+ * <p>
+ * The cleaned address is split into words once. Each word is classified by
+ * dictionary lookup against the {@link EnumeratedLookup} tables and the address
+ * components are then assigned by a fixed sequence of scans:
+ * <ol>
+ * <li>from the right: optional country (US), zip code, then state;</li>
+ * <li>from the left: optional addressee name, house number, optional
+ * pre-direction, street name, street type, optional post-direction and
+ * optional unit (line 2);</li>
+ * <li>whatever remains before the state is the city.</li>
+ * </ol>
+ * Inputs without a house number are parsed as an intersection if they contain
+ * a corner word (and, at, &amp;, @), otherwise as a city, state and zip. Every
+ * scan visits each word a bounded number of times, so the running time is
+ * linear in the length of the input.
+ * <p>
+ * Each word is classified once, when its token is built; the scans test the
+ * classification bits and only look up multi-word names (states, units) in
+ * the dictionaries. A {@link ParseSession} keeps its tokens between calls so
+ * that the words of a growing address are only classified once.
+ * <p>
+ * The result uses the same component map contract as the regex engine. The
+ * two engines agree on well formed addresses but may differ on ambiguous
+ * ones.
+ * <p>
+ * This class is stateless and thread-safe.
+ *
+ * @author jesse
+ */
+final class TokenParser {
+
+  /**
+   * Street type words and abbreviations. e.g. STREET, ST.
+   */
+  private static final Set<String> STREET_TYPES = union(EnumeratedLookup.getSTREET_TYPE());
+  /**
+   * Direction words and abbreviations. e.g. NORTH, N, NE.
+   */
+  private static final Set<String> DIRECTIONS = union(EnumeratedLookup.getDIRECTION());
+  /**
+   * State names and abbreviations. Names may contain several words.
+   */
+  private static final Set<String> STATES = union(EnumeratedLookup.getSTATE());
+  /**
+   * Address unit words and abbreviations. Some contain several words.
+   */
+  private static final Set<String> UNITS = union(EnumeratedLookup.getADDRESS_UNIT());
+  /**
+   * Spelled house numbers recognized by the parser.
+   */
+  private static final Set<String> TEXT_NUMBERS = new HashSet<>(Arrays.asList(
+    "ZERO", "ONE", "TWO", "THREE", "FOUR", "FIVE", "SIX", "SEVEN", "EIGHT", "NINE",
+    "TEN", "ELEVEN", "TWELVE", "THIRTEEN", "FOURTEEN", "FIFTEEN", "SIXTEEN", "SEVENTEEN", "EIGHTEEN", "NINETEEN"));
+  /**
+   * Words joining two streets at an intersection.
+   */
+  private static final Set<String> CORNERS = new HashSet<>(Arrays.asList("AND", "AT", "&", "@"));
+  /**
+   * The last words of the state names with several words. e.g. VIRGINIA.
+   */
+  private static final Set<String> STATE_LAST_WORDS = words(STATES, false);
+  /**
+   * The first words of the unit designators with several words. e.g. P.
+   */
+  private static final Set<String> UNIT_FIRST_WORDS = words(UNITS, true);
+  /**
+   * The longest state name, in words. e.g. FEDERATED STATES OF MICRONESIA.
+   */
+  private static final int MAX_STATE_WORDS = maxWords(STATES);
+  /**
+   * The longest unit designator, in words. e.g. P O BOX.
+   */
+  private static final int MAX_UNIT_WORDS = maxWords(UNITS);
+
+  private TokenParser() {
+  }
+
+  /**
+   * Parse a cleaned address string.
+   *
+   * @param cleanAddress an address cleaned of punctuation and extra white
+   *                     space
+   * @return a map of parsed address components, never null
+   */
+  static Map<AddressComponentKey, String> parse(String cleanAddress) {
+    Tokens tokens = new Tokens();
+    if (!cleanAddress.isEmpty()) {
+      for (String word : cleanAddress.split(" ")) {
+        tokens.add(word);
+      }
+    }
+    return parse(tokens);
+  }
+
+  /**
+   * Parse the words of a cleaned address.
+   *
+   * @param tokens the classified words of the address
+   * @return a map of parsed address components, never null
+   */
+  static ParsedAddress parse(Tokens tokens) {
+    ParsedAddress map = new ParsedAddress();
+    if (tokens.count == 0) {
+      return map;
+    }
+    int end = parseLastLine(tokens, map);
+    /**
+     * Locate the house number and the first corner word.
+     */
+    int number = -1, corner = -1;
+    for (int i = 0; i < end; i++) {
+      if (number < 0 && i + 1 < end && tokens.is(i, HOUSE_NUMBER)) {
+        number = i;
+      }
+      if (corner < 0 && i > 0 && i + 1 < end && tokens.is(i, CORNER)) {
+        corner = i;
+      }
+    }
+    if (corner >= 0 && (number < 0 || corner < number)) {
+      parseIntersection(tokens, corner, end, map);
+    } else if (number >= 0) {
+      parseStreetAddress(tokens, number, end, map);
+    } else {
+      put(map, AddressComponentKey.CITY, tokens, 0, end);
+    }
+    return map;
+  }
+
+  /**
+   * Assign the zip code and state from the right hand end of the address.
+   *
+   * @return the index of the first word after the city
+   */
+  private static int parseLastLine(Tokens tokens, Map<AddressComponentKey, String> map) {
+    int end = tokens.count;
+    /**
+     * Ignore a trailing country. This parser handles US addresses only.
+     */
+    if (end > 1 && tokens.is(end - 1, COUNTRY)) {
+      end--;
+    }
+    /**
+     * Zip code. The clean up replaces the hyphen in zip+4 with a space.
+     */
+    if (end >= 2 && tokens.is(end - 2, ZIP) && tokens.is(end - 1, ZIP_PLUS_4)) {
+      put(map, AddressComponentKey.ZIP, tokens, end - 2, end);
+      end -= 2;
+    } else if (end >= 1 && tokens.is(end - 1, ZIP)) {
+      put(map, AddressComponentKey.ZIP, tokens, end - 1, end);
+      end -= 1;
+    }
+    /**
+     * State, longest name first. A state must follow a city or street.
+     */
+    for (int w = Math.min(MAX_STATE_WORDS, end - 1); w >= 1; w--) {
+      if (w == 1 ? tokens.is(end - 1, STATE) : tokens.is(end - 1, STATE_END) && STATES.contains(join(tokens.upper, end - w, end))) {
+        put(map, AddressComponentKey.STATE, tokens, end - w, end);
+        end -= w;
+        break;
+      }
+    }
+    return end;
+  }
+
+  /**
+   * Assign the components of a street address. e.g. [name] number [predir]
+   * street type [postdir] [line2] [city].
+   */
+  private static void parseStreetAddress(Tokens tokens, int number, int end, Map<AddressComponentKey, String> map) {
+    put(map, AddressComponentKey.NAME, tokens, 0, number);
+    put(map, AddressComponentKey.NUMBER, tokens, number, number + 1);
+    int start = number + 1;
+    int type = findStreetType(tokens, start, end, map.get(AddressComponentKey.STATE));
+    int streetStart = start;
+    if (type > start + 1 && tokens.is(start, DIRECTION)) {
+      put(map, AddressComponentKey.PREDIR, tokens, start, start + 1);
+      streetStart++;
+    }
+    int next;
+    if (type > 0) {
+      put(map, AddressComponentKey.STREET, tokens, streetStart, type);
+      put(map, AddressComponentKey.TYPE, tokens, type, type + 1);
+      next = parsePostDirection(tokens, type + 1, end, AddressComponentKey.POSTDIR, map);
+    } else {
+      /**
+       * No street type. The street is the words up to a unit, or a single word.
+       */
+      int unit = streetStart + 1;
+      while (unit < end && unitLength(tokens, unit, end) == 0) {
+        unit++;
+      }
+      int streetEnd = unit < end ? unit : streetStart + 1;
+      put(map, AddressComponentKey.STREET, tokens, streetStart, streetEnd);
+      next = streetEnd;
+    }
+    /**
+     * Line 2: unit designator plus unit number, or ordinal plus unit.
+     */
+    int unit = unitLength(tokens, next, end);
+    if (unit > 0) {
+      put(map, AddressComponentKey.LINE2, tokens, next, next + unit);
+      next += unit;
+    }
+    put(map, AddressComponentKey.CITY, tokens, next, end);
+  }
+
+  /**
+   * Assign the components of an intersection. e.g. [predir] street [type]
+   * [postdir] and [predir2] street2 [type2] [postdir2] [city].
+   */
+  private static void parseIntersection(Tokens tokens, int corner, int end, Map<AddressComponentKey, String> map) {
+    /**
+     * First street: everything before the corner word.
+     */
+    int first = 0, last = corner;
+    if (last - first > 1 && tokens.is(last - 1, DIRECTION)) {
+      put(map, AddressComponentKey.POSTDIR, tokens, last - 1, last);
+      last--;
+    }
+    if (last - first > 1 && tokens.is(last - 1, STREET_TYPE)) {
+      put(map, AddressComponentKey.TYPE, tokens, last - 1, last);
+      last--;
+    }
+    if (last - first > 1 && tokens.is(first, DIRECTION)) {
+      put(map, AddressComponentKey.PREDIR, tokens, first, first + 1);
+      first++;
+    }
+    put(map, AddressComponentKey.STREET, tokens, first, last);
+    /**
+     * Second street: the first street type after the corner ends the street.
+     */
+    int start = corner + 1;
+    int type = -1;
+    for (int i = start + 1; i < end && type < 0; i++) {
+      if (tokens.is(i, STREET_TYPE)) {
+        type = i;
+      }
+    }
+    int streetStart = start;
+    if (tokens.is(start, DIRECTION) && (type < 0 ? start + 2 < end : type > start + 1)) {
+      put(map, AddressComponentKey.PREDIR2, tokens, start, start + 1);
+      streetStart++;
+    }
+    int next;
+    if (type > 0) {
+      put(map, AddressComponentKey.STREET2, tokens, streetStart, type);
+      put(map, AddressComponentKey.TYPE2, tokens, type, type + 1);
+      next = parsePostDirection(tokens, type + 1, end, AddressComponentKey.POSTDIR2, map);
+    } else {
+      put(map, AddressComponentKey.STREET2, tokens, streetStart, streetStart + 1);
+      next = streetStart + 1;
+    }
+    put(map, AddressComponentKey.CITY, tokens, next, end);
+  }
+
+  /**
+   * Find the street type word ending the street name.
+   * <p>
+   * The first street type word after at least one street name word is chosen,
+   * unless the address ends with a city name that contains a street type word
+   * (e.g. WHEAT RIDGE, CO) in which case the last street type word before that
+   * city is chosen.
+   *
+   * @return the index of the street type word, -1 if there is none
+   */
+  private static int findStreetType(Tokens tokens, int start, int end, String state) {
+    int cityStart = findConfusingCity(tokens.upper, start, end, state);
+    int limit = cityStart < 0 ? end : cityStart;
+    int type = -1;
+    for (int i = start + 1; i < limit; i++) {
+      if (tokens.is(i, STREET_TYPE)) {
+        type = i;
+        if (cityStart < 0) {
+          break;
+        }
+      }
+    }
+    return type;
+  }
+
+  /**
+   * Find a city name known to confuse the parser at the end of the address.
+   * Shorter names are tried first.
+   *
+   * @return the index of the first word of the city, -1 if none is found
+   */
+  private static int findConfusingCity(String[] upper, int start, int end, String state) {
+    String normalizedState = state == null ? null : Formatter.normalizeState(state.toUpperCase());
+    ExceptionCityIndex index = ReferenceData.getExceptionCityIndex();
+    int maxWords = Math.min(index.getMaxWords(), end - start - 2);
+    for (int w = 1; w <= maxWords; w++) {
+      Set<String> states = index.getStates(join(upper, end - w, end));
+      if (states != null && (normalizedState == null || states.contains(normalizedState))) {
+        return end - w;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Assign an optional direction following a street type.
+   *
+   * @return the index of the next unassigned word
+   */
+  private static int parsePostDirection(Tokens tokens, int i, int end, AddressComponentKey key, Map<AddressComponentKey, String> map) {
+    if (i + 1 < end && isDirectionPair(tokens.upper[i], tokens.upper[i + 1])) {
+      put(map, key, tokens, i, i + 2);
+      return i + 2;
+    }
+    if (i < end && tokens.is(i, DIRECTION)) {
+      put(map, key, tokens, i, i + 1);
+      return i + 1;
+    }
+    return i;
+  }
+
+  /**
+   * Get the number of words in a unit designation starting at the indicated
+   * word. e.g. "SUITE 1500", "APT 4B", "#5", "3RD FLOOR".
+   *
+   * @return the number of words in the unit, zero if there is no unit
+   */
+  private static int unitLength(Tokens tokens, int i, int end) {
+    if (i >= end) {
+      return 0;
+    }
+    if (tokens.is(i, UNIT_SIGN)) {
+      return 1;
+    }
+    for (int w = Math.min(MAX_UNIT_WORDS, end - i - 1); w >= 1; w--) {
+      if (tokens.is(i + w, UNIT_NUMBER) && (w == 1 ? tokens.is(i, UNIT) : tokens.is(i, UNIT_START) && UNITS.contains(join(tokens.upper, i, i + w)))) {
+        return w + 1;
+      }
+    }
+    if (i + 1 < end && tokens.is(i, ORDINAL) && tokens.is(i + 1, UNIT)) {
+      return 2;
+    }
+    return 0;
+  }
+
+  //<editor-fold defaultstate="collapsed" desc="Word Classification">
+  /**
+   * Word classification bits.
+   */
+  private static final int HOUSE_NUMBER = 1;
+  private static final int CORNER = 1 << 1;
+  private static final int DIRECTION = 1 << 2;
+  private static final int STREET_TYPE = 1 << 3;
+  private static final int STATE = 1 << 4;
+  private static final int UNIT = 1 << 5;
+  private static final int UNIT_NUMBER = 1 << 6;
+  private static final int UNIT_SIGN = 1 << 7;
+  private static final int ORDINAL = 1 << 8;
+  private static final int ZIP = 1 << 9;
+  private static final int ZIP_PLUS_4 = 1 << 10;
+  private static final int COUNTRY = 1 << 11;
+  /**
+   * The word ends a state name of several words.
+   */
+  private static final int STATE_END = 1 << 12;
+  /**
+   * The word starts a unit designator of several words.
+   */
+  private static final int UNIT_START = 1 << 13;
+
+  /**
+   * Classify a single word.
+   *
+   * @param upper the upper case word, not empty
+   * @return the classification bits of the word
+   */
+  private static int classify(String upper) {
+    int classes = 0;
+    if (isHouseNumber(upper)) {
+      classes |= HOUSE_NUMBER;
+    }
+    if (CORNERS.contains(upper)) {
+      classes |= CORNER;
+    }
+    if (DIRECTIONS.contains(upper)) {
+      classes |= DIRECTION;
+    }
+    if (STREET_TYPES.contains(upper)) {
+      classes |= STREET_TYPE;
+    }
+    if (STATES.contains(upper)) {
+      classes |= STATE;
+    }
+    if (UNITS.contains(upper)) {
+      classes |= UNIT;
+    }
+    if (isUnitNumber(upper)) {
+      classes |= UNIT_NUMBER;
+    }
+    if (upper.length() > 1 && upper.charAt(0) == '#') {
+      classes |= UNIT_SIGN;
+    }
+    if (isOrdinal(upper)) {
+      classes |= ORDINAL;
+    }
+    if (isDigits(upper, 5, 5)) {
+      classes |= ZIP;
+    }
+    if (isDigits(upper, 3, 4)) {
+      classes |= ZIP_PLUS_4;
+    }
+    if ("US".equals(upper) || "USA".equals(upper)) {
+      classes |= COUNTRY;
+    }
+    if (STATE_LAST_WORDS.contains(upper)) {
+      classes |= STATE_END;
+    }
+    if (UNIT_FIRST_WORDS.contains(upper)) {
+      classes |= UNIT_START;
+    }
+    return classes;
+  }
+
+  /**
+   * A house number: digits with an optional one letter prefix and/or suffix
+   * (e.g. 1600, 221B, N123), or a spelled number zero to nineteen.
+   */
+  private static boolean isHouseNumber(String word) {
+    int first = Character.isLetter(word.charAt(0)) ? 1 : 0;
+    int last = word.length() > first + 1 && Character.isLetter(word.charAt(word.length() - 1)) ? word.length() - 1 : word.length();
+    if (allDigits(word, first, last)) {
+      return true;
+    }
+    return TEXT_NUMBERS.contains(word);
+  }
+
+  /**
+   * A unit number: a single letter, or a word containing at least one digit.
+   */
+  private static boolean isUnitNumber(String word) {
+    if (word.length() == 1 && Character.isLetter(word.charAt(0))) {
+      return true;
+    }
+    for (int i = 0; i < word.length(); i++) {
+      if (Character.isDigit(word.charAt(i))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * A numeric ordinal. e.g. 1ST, 22ND, 3RD, 14TH.
+   */
+  private static boolean isOrdinal(String word) {
+    int n = word.length();
+    return n > 2 && allDigits(word, 0, n - 2)
+      && (word.endsWith("ST") || word.endsWith("ND") || word.endsWith("RD") || word.endsWith("TH"));
+  }
+
+  /**
+   * A two word direction abbreviation. e.g. N E.
+   */
+  private static boolean isDirectionPair(String a, String b) {
+    return ("N".equals(a) || "S".equals(a)) && ("E".equals(b) || "W".equals(b));
+  }
+
+  /**
+   * A word whose length is within the bounds and which contains only digits.
+   */
+  private static boolean isDigits(String word, int minLength, int maxLength) {
+    return word.length() >= minLength && word.length() <= maxLength && allDigits(word, 0, word.length());
+  }
+
+  /**
+   * The indicated range of the word contains only ASCII digits.
+   */
+  private static boolean allDigits(String word, int from, int to) {
+    if (from >= to) {
+      return false;
+    }
+    for (int i = from; i < to; i++) {
+      char c = word.charAt(i);
+      if (c < '0' || c > '9') {
+        return false;
+      }
+    }
+    return true;
+  }//</editor-fold>
+
+  //<editor-fold defaultstate="collapsed" desc="Helper Methods">
+  /**
+   * Put the words in the range [from, to) into the map, separated by a space.
+   * Empty ranges are ignored.
+   */
+  private static void put(Map<AddressComponentKey, String> map, AddressComponentKey key, Tokens tokens, int from, int to) {
+    if (from < to) {
+      map.put(key, join(tokens.words, from, to));
+    }
+  }
+
+  /**
+   * Join the words in the range [from, to), separated by a space.
+   */
+  private static String join(String[] words, int from, int to) {
+    if (to - from == 1) {
+      return words[from];
+    }
+    StringBuilder sb = new StringBuilder();
+    for (int i = from; i < to; i++) {
+      if (i > from) {
+        sb.append(' ');
+      }
+      sb.append(words[i]);
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Build the set of keys and values in a lookup map.
+   */
+  private static Set<String> union(Map<String, String> lookup) {
+    Set<String> set = new HashSet<>(lookup.keySet());
+    set.addAll(lookup.values());
+    return Collections.unmodifiableSet(set);
+  }
+
+  /**
+   * Collect the first or the last words of the strings with several words.
+   */
+  private static Set<String> words(Set<String> strings, boolean first) {
+    Set<String> set = new HashSet<>();
+    for (String string : strings) {
+      String[] words = string.split(" ");
+      if (words.length > 1) {
+        set.add(first ? words[0] : words[words.length - 1]);
+      }
+    }
+    return Collections.unmodifiableSet(set);
+  }
+
+  /**
+   * Get the largest number of words in any of the strings.
+   */
+  private static int maxWords(Set<String> strings) {
+    int max = 1;
+    for (String string : strings) {
+      max = Math.max(max, string.split(" ").length);
+    }
+    return max;
+  }//</editor-fold>
+
+  /**
+   * The words of an address, each with its upper case form and its
+   * classification. Words are classified when they are added, so a list that
+   * is kept and extended only classifies its new words.
+   * <p>
+   * This class is not thread-safe.
+   */
+  static final class Tokens {
+
+    private String[] words = new String[16];
+    private String[] upper = new String[16];
+    private int[] classes = new int[16];
+    private int count;
+
+    /**
+     * @return the number of words
+     */
+    int size() {
+      return count;
+    }
+
+    /**
+     * @param index the word index
+     * @return the word
+     */
+    String get(int index) {
+      return words[index];
+    }
+
+    /**
+     * Add a word.
+     *
+     * @param word a word of a cleaned address, not empty
+     */
+    void add(String word) {
+      String wordUpper = word.toUpperCase();
+      add(word, wordUpper, classify(wordUpper));
+    }
+
+    /**
+     * Add a word of another list without classifying it again.
+     *
+     * @param other the other list
+     * @param index the index of the word in the other list
+     */
+    void add(Tokens other, int index) {
+      add(other.words[index], other.upper[index], other.classes[index]);
+    }
+
+    private void add(String word, String wordUpper, int wordClasses) {
+      if (count == words.length) {
+        words = Arrays.copyOf(words, 2 * count);
+        upper = Arrays.copyOf(upper, 2 * count);
+        classes = Arrays.copyOf(classes, 2 * count);
+      }
+      words[count] = word;
+      upper[count] = wordUpper;
+      classes[count] = wordClasses;
+      count++;
+    }
+
+    /**
+     * Remove the words after an index.
+     *
+     * @param size the number of words to keep
+     */
+    void truncate(int size) {
+      Arrays.fill(words, size, count, null);
+      Arrays.fill(upper, size, count, null);
+      count = size;
+    }
+
+    /**
+     * @return true if the word has a classification bit
+     */
+    private boolean is(int index, int wordClass) {
+      return (classes[index] & wordClass) != 0;
+    }
+  }
+}
@@ -0,0 +1,166 @@
+package ch.keybridge.gis.addressparser.us;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Off-heap index of the 5-digit zip codes in the city alias data set, giving
+ * the canonical city and state of each zip code and the other names by which
+ * its city is known.
+ * <p>
+ * The zip codes are stored in the {@link ReferenceDataSnapshot} as a sorted
+ * array of fixed size records. A lookup is a binary search of that array with no
+ * boxing and no allocation; names are decoded once, on first use, and shared.
+ * Lookups address a zip code record by its index, e.g.
+ * <pre>
+ * ZipCodeIndex index = ReferenceData.getZipCodeIndex();
+ * int record = index.find("62701-1234");
+ * if (record != -1) {
+ *   String city = index.getCity(record);    // SPRINGFIELD
+ *   String state = index.getState(record);  // IL
+ * }
+ * </pre>
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author jesse
+ */
+public final class ZipCodeIndex {
+
+  private final ReferenceDataSnapshot snapshot;
+  /**
+   * The size of a string reference and of a zip code record: ZIP CITY STATE
+   * FIRST_ALIAS.
+   */
+  private final int width;
+  private final int recordSize;
+  /**
+   * The buffer position of the first zip code record.
+   */
+  private final int recordPosition;
+  /**
+   * The buffer position of the first zip code alias.
+   */
+  private final int aliasPosition;
+  private final int size;
+  private final int aliasCount;
+
+  /**
+   * Construct an index over a snapshot.
+   *
+   * @param snapshot the reference data snapshot
+   */
+  ZipCodeIndex(ReferenceDataSnapshot snapshot) {
+    this.snapshot = snapshot;
+    ByteBuffer buffer = snapshot.getBuffer();
+    this.width = snapshot.getWidth();
+    this.recordSize = snapshot.getZipRecordSize();
+    this.size = buffer.getInt(snapshot.getZipCodePosition());
+    this.recordPosition = snapshot.getZipCodePosition() + 4;
+    this.aliasCount = buffer.getInt(snapshot.getZipAliasPosition());
+    this.aliasPosition = snapshot.getZipAliasPosition() + 4;
+  }
+
+  /**
+   * @return the number of zip codes in the index
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Find a zip code.
+   *
+   * @param zip the 5-digit zip code as an integer. e.g. 501 for "00501"
+   * @return the record index, -1 if the zip code is not known
+   */
+  public int find(int zip) {
+    int low = 0, high = size - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int value = getZip(mid);
+      if (value < zip) {
+        low = mid + 1;
+      } else if (value > zip) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Find a zip code given as text. The text must start with five digits, which
+   * may be followed by a ZIP+4 extension. e.g. "62701", "62701-1234".
+   *
+   * @param zip the zip code text
+   * @return the record index, -1 if the text is not a zip code or the zip code
+   *         is not known
+   */
+  public int find(CharSequence zip) {
+    if (zip == null || zip.length() < 5 || (zip.length() > 5 && Character.isDigit(zip.charAt(5)))) {
+      return -1;
+    }
+    int value = 0;
+    for (int i = 0; i < 5; i++) {
+      char c = zip.charAt(i);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      value = value * 10 + c - '0';
+    }
+    return find(value);
+  }
+
+  /**
+   * @param record the record index
+   * @return the 5-digit zip code as an integer
+   */
+  public int getZip(int record) {
+    return snapshot.getUnsigned24(recordPosition + recordSize * record);
+  }
+
+  /**
+   * @param record the record index
+   * @return the canonical upper case city name. e.g. "HOLTSVILLE"
+   */
+  public String getCity(int record) {
+    return snapshot.getSharedString(snapshot.getReference(recordPosition + recordSize * record + 3));
+  }
+
+  /**
+   * @param record the record index
+   * @return the 2-character state abbreviation
+   */
+  public String getState(int record) {
+    return snapshot.getSharedString(snapshot.getReference(recordPosition + recordSize * record + 3 + width));
+  }
+
+  /**
+   * @param record the record index
+   * @return the number of alias names of the city
+   */
+  public int getAliasCount(int record) {
+    return firstAlias(record + 1) - firstAlias(record);
+  }
+
+  /**
+   * @param record the record index
+   * @param alias  the alias index, from zero to {@link #getAliasCount(int)}
+   * @return the upper case alias name. e.g. "IRS SERVICE CENTER"
+   */
+  public String getAlias(int record, int alias) {
+    if (alias < 0 || alias >= getAliasCount(record)) {
+      throw new IndexOutOfBoundsException("Alias " + alias + " of zip code record " + record);
+    }
+    return snapshot.getSharedString(snapshot.getReference(aliasPosition + width * (firstAlias(record) + alias)));
+  }
+
+  /**
+   * Get the index of the first alias of a record. The record after the last
+   * record starts after the last alias.
+   */
+  private int firstAlias(int record) {
+    return record == size ? aliasCount : snapshot.getReference(recordPosition + recordSize * record + 3 + 2 * width);
+  }
+}
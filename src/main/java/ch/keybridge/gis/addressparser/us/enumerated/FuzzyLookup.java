@@ -0,0 +1,261 @@
+package ch.keybridge.gis.addressparser.us.enumerated;
+
+import java.util.*;
+
+/**
+ * Approximate lookup of misspelled words in an {@link EnumeratedLookup}
+ * mapping, e.g. "VIRGINNIA" for VIRGINIA or "BOULEVRD" for BOULEVARD.
+ * <p>
+ * The index is a symmetric deletion index in the manner of SymSpell: every
+ * string obtained by deleting up to two characters of a key is mapped to that
+ * key when the index is built. A lookup generates the deletions of the
+ * queried word and reads the keys they share, so it costs a few dozen hash
+ * lookups and no scan of the keys. Candidates are then checked with the
+ * optimal string alignment distance, which counts a transposition ("SUIET")
+ * as one edit.
+ * <p>
+ * Short words are too easily confused to correct: the allowed distance is
+ * zero for words of fewer than 5 characters, one for words of 5 to 7
+ * characters and two for longer words, and applies to both the queried word
+ * and the key.
+ * <p>
+ * This class is immutable and thread-safe.
+ *
+ * @author jesse
+ */
+public final class FuzzyLookup {
+
+  /**
+   * The mapping of words to abbreviations.
+   */
+  private final Map<String, String> lookup;
+  /**
+   * The keys and abbreviations of the lookup mapping.
+   */
+  private final Set<String> words = new HashSet<>();
+  /**
+   * The keys sharing each deletion.
+   */
+  private final Map<String, List<String>> deletions = new HashMap<>();
+
+  /**
+   * Index the keys of a lookup mapping.
+   *
+   * @param lookup a mapping of upper case words to their abbreviation
+   */
+  public FuzzyLookup(Map<String, String> lookup) {
+    this.lookup = lookup;
+    words.addAll(lookup.keySet());
+    words.addAll(lookup.values());
+    for (String key : lookup.keySet()) {
+      for (String deletion : new HashSet<>(deletions(key, getMaxDistance(key.length())))) {
+        deletions.computeIfAbsent(deletion, d -> new ArrayList<>(1)).add(key);
+      }
+    }
+  }
+
+  /**
+   * Determine if a word is spelled correctly: if it is a key or an
+   * abbreviation of the lookup mapping.
+   *
+   * @param word an upper case word
+   * @return true if the word is in the mapping
+   */
+  public boolean contains(String word) {
+    return words.contains(word);
+  }
+
+  /**
+   * Find the key nearest to a misspelled word.
+   *
+   * @param word an upper case word
+   * @return the key at the smallest edit distance within the allowed distance,
+   *         null if there is none, if the word is spelled correctly or if keys
+   *         with different abbreviations are equally near
+   */
+  public String find(String word) {
+    int maxDistance = getMaxDistance(word.length());
+    if (maxDistance == 0 || contains(word)) {
+      return null;
+    }
+    String nearest = null;
+    int nearestDistance = maxDistance + 1;
+    boolean ambiguous = false;
+    /**
+     * A near key shares many deletions with the word. Check it once.
+     */
+    Set<String> checked = new HashSet<>();
+    for (String deletion : deletions(word, maxDistance)) {
+      List<String> keys = deletions.get(deletion);
+      if (keys == null) {
+        continue;
+      }
+      for (String key : keys) {
+        if (!checked.add(key)) {
+          continue;
+        }
+        int limit = Math.min(maxDistance, getMaxDistance(key.length()));
+        int distance = distance(word, key, limit);
+        if (distance > limit) {
+          continue;
+        }
+        if (distance < nearestDistance) {
+          nearest = key;
+          nearestDistance = distance;
+          ambiguous = false;
+        } else if (distance == nearestDistance && !key.equals(nearest)) {
+          /**
+           * Keys with the same abbreviation are spellings of the same word.
+           * Pick one of them consistently.
+           */
+          if (lookup.get(key).equals(lookup.get(nearest))) {
+            nearest = key.compareTo(nearest) < 0 ? key : nearest;
+          } else {
+            ambiguous = true;
+          }
+        }
+      }
+    }
+    return ambiguous ? null : nearest;
+  }
+
+  /**
+   * Get the largest edit distance at which a word is corrected.
+   *
+   * @param length the word length
+   * @return the maximum edit distance
+   */
+  public static int getMaxDistance(int length) {
+    return length < 5 ? 0 : length < 8 ? 1 : 2;
+  }
+
+  /**
+   * Get the strings obtained by deleting up to a number of characters of a
+   * word, including the word itself. A string obtained in several ways, e.g.
+   * by deleting either of a double letter, is listed more than once.
+   */
+  private static List<String> deletions(String word, int maxDistance) {
+    List<String> deletions = new ArrayList<>();
+    deletions.add(word);
+    addDeletions(word.toCharArray(), 0, maxDistance, deletions);
+    return deletions;
+  }
+
+  /**
+   * Add the strings obtained by deleting characters at or after an index.
+   * Characters are deleted in increasing index order so each set of deleted
+   * positions is visited once.
+   */
+  private static void addDeletions(char[] chars, int from, int maxDistance, List<String> deletions) {
+    for (int i = from; i < chars.length; i++) {
+      char[] deleted = new char[chars.length - 1];
+      System.arraycopy(chars, 0, deleted, 0, i);
+      System.arraycopy(chars, i + 1, deleted, i, deleted.length - i);
+      deletions.add(new String(deleted));
+      if (maxDistance > 1) {
+        addDeletions(deleted, i, maxDistance - 1, deletions);
+      }
+    }
+  }
+
+  /**
+   * Compute the optimal string alignment distance of two words: the number of
+   * insertions, deletions, substitutions and transpositions of adjacent
+   * characters that turn one into the other.
+   *
+   * @param a           a word
+   * @param b           another word
+   * @param maxDistance the largest distance of interest
+   * @return the distance, or maxDistance + 1 if it is larger than maxDistance
+   */
+  public static int distance(String a, String b, int maxDistance) {
+    if (Math.abs(a.length() - b.length()) > maxDistance) {
+      return maxDistance + 1;
+    }
+    int[] previous2 = new int[b.length() + 1];
+    int[] previous = new int[b.length() + 1];
+    int[] current = new int[b.length() + 1];
+    for (int j = 0; j <= b.length(); j++) {
+      previous[j] = j;
+    }
+    for (int i = 1; i <= a.length(); i++) {
+      current[0] = i;
+      int rowMin = i;
+      for (int j = 1; j <= b.length(); j++) {
+        int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+        int d = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+        if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+          d = Math.min(d, previous2[j - 2] + 1);
+        }
+        current[j] = d;
+        rowMin = Math.min(rowMin, d);
+      }
+      if (rowMin > maxDistance) {
+        return maxDistance + 1;
+      }
+      int[] swap = previous2;
+      previous2 = previous;
+      previous = current;
+      current = swap;
+    }
+    return Math.min(previous[b.length()], maxDistance + 1);
+  }
+
+  //<editor-fold defaultstate="collapsed" desc="Indexes">
+  /**
+   * Approximate lookup of state names. Built on first use.
+   *
+   * @return the state name index
+   */
+  public static FuzzyLookup getSTATE() {
+    return States.INDEX;
+  }
+
+  /**
+   * Approximate lookup of street type words. Built on first use.
+   *
+   * @return the street type index
+   */
+  public static FuzzyLookup getSTREET_TYPE() {
+    return StreetTypes.INDEX;
+  }
+
+  /**
+   * Approximate lookup of direction words. Built on first use.
+   *
+   * @return the direction index
+   */
+  public static FuzzyLookup getDIRECTION() {
+    return Directions.INDEX;
+  }
+
+  /**
+   * Approximate lookup of living unit words. Built on first use.
+   *
+   * @return the living unit index
+   */
+  public static FuzzyLookup getADDRESS_UNIT() {
+    return AddressUnits.INDEX;
+  }
+
+  private static class States {
+
+    private static final FuzzyLookup INDEX = new FuzzyLookup(EnumeratedLookup.getSTATE());
+  }
+
+  private static class StreetTypes {
+
+    private static final FuzzyLookup INDEX = new FuzzyLookup(EnumeratedLookup.getSTREET_TYPE());
+  }
+
+  private static class Directions {
+
+    private static final FuzzyLookup INDEX = new FuzzyLookup(EnumeratedLookup.getDIRECTION());
+  }
+
+  private static class AddressUnits {
+
+    private static final FuzzyLookup INDEX = new FuzzyLookup(EnumeratedLookup.getADDRESS_UNIT());
+  }
+  //</editor-fold>
+}
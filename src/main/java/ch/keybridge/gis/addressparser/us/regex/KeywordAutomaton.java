@@ -0,0 +1,267 @@
+package ch.keybridge.gis.addressparser.us.regex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * An Aho-Corasick automaton that finds any of a fixed set of keywords in a
+ * text in a single left to right pass, independent of the number of keywords.
+ * <p>
+ * The automaton is compiled into a dense transition table once, at
+ * construction, so each input character costs one array lookup. Characters
+ * that appear in no keyword send the automaton back to its start state.
+ * Matching is case-sensitive; callers normalize case before matching.
+ * <p>
+ * Instances are immutable and thread-safe.
+ *
+ * @author jesse
+ */
+public final class KeywordAutomaton {
+
+  /**
+   * The keywords, indexed by keyword id.
+   */
+  private final String[] keywords;
+  /**
+   * Input symbol index for each character, -1 if the character appears in no
+   * keyword.
+   */
+  private final int[] symbolOf;
+  /**
+   * The number of distinct keyword characters.
+   */
+  private final int symbolCount;
+  /**
+   * The transition table: the next state is
+   * {@code transitions[state * symbolCount + symbol]}.
+   */
+  private final int[] transitions;
+  /**
+   * The id of the keyword ending at each state, -1 if none.
+   */
+  private final int[] keywordAt;
+  /**
+   * For each state, the nearest state on its failure chain at which a keyword
+   * ends, -1 if none. Following these links from a state visits every keyword
+   * ending at the current position, longest first.
+   */
+  private final int[] outputLink;
+
+  /**
+   * Compile an automaton over a set of keywords. Empty keywords are ignored.
+   *
+   * @param keywords the keywords
+   */
+  public KeywordAutomaton(Collection<String> keywords) {
+    List<String> list = new ArrayList<>();
+    int maxStates = 1;
+    char maxChar = 0;
+    for (String keyword : keywords) {
+      if (keyword != null && !keyword.isEmpty()) {
+        list.add(keyword);
+        maxStates += keyword.length();
+        for (int i = 0; i < keyword.length(); i++) {
+          maxChar = (char) Math.max(maxChar, keyword.charAt(i));
+        }
+      }
+    }
+    this.keywords = list.toArray(new String[0]);
+    /**
+     * Number the distinct keyword characters.
+     */
+    this.symbolOf = new int[maxChar + 1];
+    Arrays.fill(symbolOf, -1);
+    int symbols = 0;
+    for (String keyword : this.keywords) {
+      for (int i = 0; i < keyword.length(); i++) {
+        if (symbolOf[keyword.charAt(i)] == -1) {
+          symbolOf[keyword.charAt(i)] = symbols++;
+        }
+      }
+    }
+    this.symbolCount = symbols;
+    /**
+     * Build the keyword trie. Missing transitions are -1.
+     */
+    int[] delta = new int[maxStates * symbols];
+    Arrays.fill(delta, -1);
+    int[] terminal = new int[maxStates];
+    Arrays.fill(terminal, -1);
+    int states = 1;
+    for (int k = 0; k < this.keywords.length; k++) {
+      int state = 0;
+      for (int i = 0; i < this.keywords[k].length(); i++) {
+        int index = state * symbols + symbolOf[this.keywords[k].charAt(i)];
+        if (delta[index] == -1) {
+          delta[index] = states++;
+        }
+        state = delta[index];
+      }
+      if (terminal[state] == -1) {
+        terminal[state] = k;
+      }
+    }
+    /**
+     * Breadth-first, compute the failure link of each state, complete the
+     * missing transitions through the failure links and chain the outputs.
+     */
+    int[] fail = new int[states];
+    int[] output = new int[states];
+    Arrays.fill(output, -1);
+    int[] queue = new int[states];
+    int head = 0, tail = 0;
+    for (int c = 0; c < symbols; c++) {
+      if (delta[c] == -1) {
+        delta[c] = 0;
+      } else {
+        fail[delta[c]] = 0;
+        queue[tail++] = delta[c];
+      }
+    }
+    while (head < tail) {
+      int state = queue[head++];
+      output[state] = terminal[fail[state]] != -1 ? fail[state] : output[fail[state]];
+      for (int c = 0; c < symbols; c++) {
+        int index = state * symbols + c;
+        int fallback = delta[fail[state] * symbols + c];
+        if (delta[index] == -1) {
+          delta[index] = fallback;
+        } else {
+          fail[delta[index]] = fallback;
+          queue[tail++] = delta[index];
+        }
+      }
+    }
+    this.transitions = Arrays.copyOf(delta, states * symbols);
+    this.keywordAt = Arrays.copyOf(terminal, states);
+    this.outputLink = output;
+  }
+
+  /**
+   * @return the number of keywords
+   */
+  public int size() {
+    return keywords.length;
+  }
+
+  /**
+   * Get a keyword by id. Keyword ids follow the iteration order of the
+   * collection the automaton was built from.
+   *
+   * @param id the keyword id
+   * @return the keyword
+   */
+  public String getKeyword(int id) {
+    return keywords[id];
+  }
+
+  /**
+   * Find the right-most keyword in a text. Of several keywords ending at the
+   * same right-most position the longest is returned, so the result does not
+   * depend on the keyword order.
+   *
+   * @param text       the text to search
+   * @param wholeWords true to only accept keywords that are not preceded or
+   *                   followed by a letter or digit
+   * @return the match, null if no keyword is found
+   */
+  public Match findLast(CharSequence text, boolean wholeWords) {
+    return findLast(text, wholeWords, null);
+  }
+
+  /**
+   * Find the right-most accepted keyword in a text. Of several accepted
+   * keywords ending at the same right-most position the longest is returned.
+   *
+   * @param text       the text to search
+   * @param wholeWords true to only accept keywords that are not preceded or
+   *                   followed by a letter or digit
+   * @param accept     a filter on keyword ids, null to accept all keywords
+   * @return the match, null if no accepted keyword is found
+   */
+  public Match findLast(CharSequence text, boolean wholeWords, IntPredicate accept) {
+    int state = 0;
+    int bestKeyword = -1, bestEnd = -1;
+    for (int i = 0; i < text.length(); i++) {
+      state = next(state, text.charAt(i));
+      for (int s = keywordAt[state] != -1 ? state : outputLink[state]; s > 0; s = outputLink[s]) {
+        int keyword = keywordAt[s];
+        if ((accept == null || accept.test(keyword))
+          && (!wholeWords || (isBoundary(text, i - keywords[keyword].length()) && isBoundary(text, i + 1)))) {
+          bestKeyword = keyword;
+          bestEnd = i + 1;
+          break;
+        }
+      }
+    }
+    return bestKeyword == -1 ? null : new Match(bestKeyword, bestEnd - keywords[bestKeyword].length(), bestEnd);
+  }
+
+  /**
+   * Advance the automaton by one character.
+   */
+  private int next(int state, char c) {
+    int symbol = c < symbolOf.length ? symbolOf[c] : -1;
+    return symbol == -1 ? 0 : transitions[state * symbolCount + symbol];
+  }
+
+  /**
+   * @return true if the position is outside the text or holds a character
+   *         that is neither a letter nor a digit
+   */
+  private static boolean isBoundary(CharSequence text, int index) {
+    return index < 0 || index >= text.length() || !Character.isLetterOrDigit(text.charAt(index));
+  }
+
+  /**
+   * A keyword found in a text.
+   */
+  public final class Match {
+
+    private final int keywordId;
+    private final int start;
+    private final int end;
+
+    Match(int keywordId, int start, int end) {
+      this.keywordId = keywordId;
+      this.start = start;
+      this.end = end;
+    }
+
+    /**
+     * @return the id of the matched keyword
+     */
+    public int getKeywordId() {
+      return keywordId;
+    }
+
+    /**
+     * @return the matched keyword
+     */
+    public String getKeyword() {
+      return keywords[keywordId];
+    }
+
+    /**
+     * @return the index of the first matched character
+     */
+    public int getStart() {
+      return start;
+    }
+
+    /**
+     * @return the index after the last matched character
+     */
+    public int getEnd() {
+      return end;
+    }
+
+    @Override
+    public String toString() {
+      return getKeyword() + " [" + start + "," + end + ")";
+    }
+  }
+}
@@ -1,5 +1,6 @@
 package ch.keybridge.gis.addressparser.us.regex;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.regex.Matcher;
@@ -36,22 +37,36 @@ public class RegexPatternFactory {
   }
 
   /**
-   * Helper class to contain named REGEX patterns
+   * Helper class to contain named REGEX patterns.
+   * <p>
+   * The regex is compiled once when the group is constructed. Instances are
+   * immutable and may be shared between threads.
    */
   public static class RegexPatternGroup {
 
     private final String _regex;
+    private final Pattern _pattern;
     private final Map<Integer, String> _namedGroupMap;
 
     public RegexPatternGroup(String regex, Map<Integer, String> namedGroupMap) {
       _regex = regex;
-      _namedGroupMap = namedGroupMap;
+      _pattern = Pattern.compile(regex);
+      _namedGroupMap = Collections.unmodifiableMap(new HashMap<>(namedGroupMap));
     }
 
     public String getRegex() {
       return _regex;
     }
 
+    /**
+     * Get the compiled regex pattern.
+     *
+     * @return the compiled pattern
+     */
+    public Pattern getPattern() {
+      return _pattern;
+    }
+
     public Map<Integer, String> getNamedGroupMap() {
       return _namedGroupMap;
     }
@@ -0,0 +1,65 @@
+package ch.keybridge.gis.addressparser.us.regex;
+
+import java.util.regex.Pattern;
+
+/**
+ * Registry of pre-compiled regex patterns used on the parsing and formatting
+ * hot paths.
+ * <p>
+ * All patterns are compiled once when this class is loaded. {@link Pattern}
+ * instances are immutable and safe for use by multiple concurrent threads;
+ * only the {@link java.util.regex.Matcher} objects they create are not.
+ *
+ * @author jesse
+ */
+public final class RegexPatternRegistry {
+
+  /**
+   * Leading and trailing non-word characters plus any whitespace or
+   * punctuation other than parentheses, hash, ampersand and quotes.
+   */
+  public static final Pattern CLEANUP = Pattern.compile("^\\W+|\\W+$|[\\s\\p{Punct}&&[^\\)\\(#&'`]]");
+  /**
+   * One or more whitespace characters.
+   */
+  public static final Pattern WHITESPACE = Pattern.compile("\\s+");
+  /**
+   * A space immediately preceding a comma.
+   */
+  public static final Pattern SPACE_COMMA = Pattern.compile(" ,", Pattern.LITERAL);
+  /**
+   * A complete (upper case) street designator. e.g. "STREET", "ST".
+   */
+  public static final Pattern STREET_DESIGNATOR = Pattern.compile(NumberAndOrdinalPattern.STREET_DESIGNATOR);
+  /**
+   * A street designator word appearing anywhere in a string, any case.
+   */
+  public static final Pattern STREET_DESIGNATOR_WORD = Pattern.compile("\\b(?i:(?:" + NumberAndOrdinalPattern.STREET_DESIGNATOR + "))\\b");
+  /**
+   * A complete (upper case) US state name or abbreviation.
+   */
+  public static final Pattern US_STATES = Pattern.compile(NumberAndOrdinalPattern.US_STATES);
+  /**
+   * A lower case letter at the start of a word. Used for proper casing.
+   */
+  public static final Pattern PROPER_CASE = Pattern.compile("(^|\\W)([a-z])");
+  /**
+   * A number spelled as text, zero to nineteen.
+   */
+  public static final Pattern NUMBER_TEXT = Pattern.compile("^\\W*(" + NumberAndOrdinalPattern.TXT_NUM_0_19 + ")\\W*");
+  /**
+   * A number written as digits with an optional suffix.
+   */
+  public static final Pattern NUMBER_DIGIT = Pattern.compile("(.*?\\d+)\\W*(.+)?");
+  /**
+   * A separator between the parts of a two part number. e.g. "twenty-one".
+   */
+  public static final Pattern NUMBER_PAIR_SEPARATOR = Pattern.compile("[ -]");
+  /**
+   * An address line 2 containing an address unit plus unit number.
+   */
+  public static final Pattern LINE2 = Pattern.compile("\\W*(?:" + AddressComponentPattern.LINE2A_GROUPED + ")\\W*");
+
+  private RegexPatternRegistry() {
+  }
+}
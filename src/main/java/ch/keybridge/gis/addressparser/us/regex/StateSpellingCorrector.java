@@ -4,6 +4,10 @@ import ch.keybridge.gis.addressparser.us.enumerated.EnumeratedLookup;
 
 /**
  * Class to correct the spelling of a US state.
+ * <p>
+ * All state name spellings are compiled once into a {@link KeywordAutomaton},
+ * so an address is scanned in a single pass regardless of the number of
+ * spellings.
  *
  * @author jesse
  */
@@ -11,6 +15,11 @@ public class StateSpellingCorrector {
 
   /**
    * Attempts to substitute 2-character abbreviations for spelled state names
+   * <p>
+   * Only whole words are replaced. If several state names appear the
+   * right-most is replaced, since the state follows the street and city in a
+   * well-formed address. Of overlapping names ending at the same position the
+   * longest is replaced (e.g. "WEST VIRGINIA" rather than "VIRGINIA").
    *
    * @param rawAddress
    * @return rawAddress or spelling corrected address if a state mis-spelling is
@@ -18,16 +27,25 @@ public class StateSpellingCorrector {
    */
   public static String nameToAbbreviation(String rawAddress) {
     /**
-     * Convert the address to upper case so the state names will match. Then
-     * iterate through the pre-configured state name permutations. If there is a
-     * match then replace it with the corresponding abbreviation and return.
+     * Convert the address to upper case so the state names will match. If
+     * there is a match then replace it with the corresponding abbreviation and
+     * return the upper case address.
      */
     String rawAddressUpper = rawAddress.toUpperCase();
-    for (String stateName : EnumeratedLookup.getSTATE().keySet()) {
-      if (rawAddressUpper.contains(stateName)) {
-        return rawAddressUpper.replace(stateName, EnumeratedLookup.getSTATE().get(stateName));
-      }
+    KeywordAutomaton.Match match = StateNames.AUTOMATON.findLast(rawAddressUpper, true);
+    if (match == null) {
+      return rawAddress;
     }
-    return rawAddress;
+    return rawAddressUpper.substring(0, match.getStart())
+      + EnumeratedLookup.getSTATE().get(match.getKeyword())
+      + rawAddressUpper.substring(match.getEnd());
+  }
+
+  /**
+   * Lazily compiled state name automaton.
+   */
+  private static class StateNames {
+
+    private static final KeywordAutomaton AUTOMATON = new KeywordAutomaton(EnumeratedLookup.getSTATE().keySet());
   }
 }
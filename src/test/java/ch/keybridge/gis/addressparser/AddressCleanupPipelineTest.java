@@ -0,0 +1,108 @@
+/*
+ *  Copyright (C) 2015 Caulfield IP Holdings (Caulfield) and/or its affiliates.
+ *  All rights reserved. Use is subject to license terms.
+ *
+ *  Software Code is protected by Caulfield Copyrights. Caulfield hereby reserves
+ *  all rights in and to Caulfield Copyrights and no license is granted under
+ *  Caulfield Copyrights in this Software License Agreement. Caulfield generally
+ *  licenses Caulfield Copyrights for commercialization pursuant to the terms of
+ *  either Caulfield's Standard Software Source Code License Agreement or
+ *  Caulfield's Standard Product License Agreement.
+ *
+ *  A copy of either License Agreement can be obtained on request by email from:
+ *  info@caufield.org.
+ */
+package ch.keybridge.gis.addressparser;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ * @author Jesse Caulfield <jesse@caulfield.org>
+ */
+public class AddressCleanupPipelineTest {
+
+  private static final String[] RECORDS = {
+    "1600 Tysons Blvd. Suite 1500,McLean,VA,22102,US",
+    "\"123 N Main St, Apt 4B\",Springfield,IL,62701",
+    "PO Box 123,Anytown,CA,90210",
+    "100 First Street,San Francisco,California,94105,US",
+    ",,,,",
+    "Wagner Annex,University Park,PA,16802,US"
+  };
+
+  @Test
+  public void testCleanPreservesOrder() throws Exception {
+    Path input = Files.createTempFile("address-in", ".csv");
+    Path serialOutput = Files.createTempFile("address-serial", ".csv");
+    Path parallelOutput = Files.createTempFile("address-parallel", ".csv");
+    try {
+      List<String> lines = new ArrayList<>();
+      lines.add("street,city,state,postalCode,country");
+      for (int i = 0; i < 500; i++) {
+        lines.add(RECORDS[i % RECORDS.length]);
+      }
+      Files.write(input, lines, StandardCharsets.UTF_8);
+      /**
+       * One worker and a one-record queue is trivially ordered. Many workers
+       * and a small queue exercise reordering and back pressure.
+       */
+      AddressCleanupPipeline.Summary serial = new AddressCleanupPipeline(AddressParser.shared(), ',', 1, 1).clean(input, serialOutput, true);
+      AddressCleanupPipeline.Summary parallel = new AddressCleanupPipeline(AddressParser.shared(), ',', 8, 4).clean(input, parallelOutput, true);
+
+      assertEquals(500, serial.getRecords());
+      assertEquals(500, parallel.getRecords());
+      assertEquals(serial.getFailures(), parallel.getFailures());
+      assertTrue(parallel.getFailures() > 0);
+
+      List<String> serialLines = Files.readAllLines(serialOutput, StandardCharsets.UTF_8);
+      assertEquals(lines.size(), serialLines.size());
+      assertEquals(lines.get(0), serialLines.get(0));
+      assertEquals(serialLines, Files.readAllLines(parallelOutput, StandardCharsets.UTF_8));
+      System.out.println("  cleanup pipeline " + parallel + " OK\n" + serialLines.get(1) + "\n" + serialLines.get(2));
+    } finally {
+      Files.deleteIfExists(input);
+      Files.deleteIfExists(serialOutput);
+      Files.deleteIfExists(parallelOutput);
+    }
+  }
+
+  @Test
+  public void testCleanEmptyFile() throws Exception {
+    Path input = Files.createTempFile("address-in", ".csv");
+    Path output = Files.createTempFile("address-out", ".csv");
+    try {
+      AddressCleanupPipeline pipeline = new AddressCleanupPipeline(AddressParser.shared(), ',', 2, 4);
+      AddressCleanupPipeline.Summary summary = pipeline.clean(input, output, true);
+      assertEquals(0, summary.getRecords());
+      assertEquals(0, summary.getFailures());
+      assertEquals(0, Files.size(output));
+      /**
+       * A header alone has no records.
+       */
+      Files.write(input, "street,city,state,postalCode,country\n".getBytes(StandardCharsets.UTF_8));
+      assertEquals(0, pipeline.clean(input, output, true).getRecords());
+      System.out.println("  cleanup pipeline empty file OK");
+    } finally {
+      Files.deleteIfExists(input);
+      Files.deleteIfExists(output);
+    }
+  }
+
+  @Test
+  public void testDelimitedRecord() {
+    List<String> fields = DelimitedRecord.split("\"a, \"\"b\"\"\",c,,d", ',');
+    assertEquals(4, fields.size());
+    assertEquals("a, \"b\"", fields.get(0));
+    assertEquals("", fields.get(2));
+    assertEquals("\"a, \"\"b\"\"\",c,,d", DelimitedRecord.join(',', "a, \"b\"", "c", null, "d"));
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ *  Copyright (C) 2015 Caulfield IP Holdings (Caulfield) and/or its affiliates.
+ *  All rights reserved. Use is subject to license terms.
+ *
+ *  Software Code is protected by Caulfield Copyrights. Caulfield hereby reserves
+ *  all rights in and to Caulfield Copyrights and no license is granted under
+ *  Caulfield Copyrights in this Software License Agreement. Caulfield generally
+ *  licenses Caulfield Copyrights for commercialization pursuant to the terms of
+ *  either Caulfield's Standard Software Source Code License Agreement or
+ *  Caulfield's Standard Product License Agreement.
+ *
+ *  A copy of either License Agreement can be obtained on request by email from:
+ *  info@caufield.org.
+ */
+package ch.keybridge.gis.addressparser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Verify that a single shared AddressParser produces the same results when
+ * called from many threads as when called from one.
+ *
+ * @author Jesse Caulfield <jesse@caulfield.org>
+ */
+public class AddressParserConcurrencyTest {
+
+  private static final int THREADS = 16;
+  private static final int ROUNDS = 20;
+
+  private static final List<String> CORPUS = Arrays.asList(
+    "1600 Tysons Blvd., Suite 1500, McLean, VA  22102",
+    "1750 Tysons Blvd, Suite 1500, McLean, Virginia 22102",
+    "123 N Main St Apt 4B, Springfield, IL 62701-1234",
+    "100 First Street, San Francisco, California 94105",
+    "500 W Madison Street Suite 1000 Chicago IL 60661",
+    "Main St and Oak Ave, Springfield, IL 62701",
+    "Broadway & 42nd St, New York, NY 10036",
+    "Springfield, IL 62701",
+    "PO Box 123, Anytown, CA 90210",
+    "1234 Wheat Ridge Ave Wheat Ridge CO",
+    "3 Elm Court Bldg 7, St Louis, MO 63101",
+    "700 E Pennsylvania Ave NW Washington DC 20003",
+    "the quick brown fox jumps over the lazy dog");
+
+  @Test
+  public void testShared() {
+    assertSame(AddressParser.shared(), AddressParser.shared());
+  }
+
+  @Test
+  public void testConcurrentParse() throws Exception {
+    AddressParser addressParser = AddressParser.shared();
+    /**
+     * Establish the expected single-threaded results.
+     */
+    final List<String> expected = parseAll(addressParser);
+    /**
+     * Release all workers at once to maximize contention.
+     */
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      final CountDownLatch start = new CountDownLatch(1);
+      List<Future<List<String>>> futures = new ArrayList<>();
+      for (int i = 0; i < THREADS; i++) {
+        futures.add(executor.submit(() -> {
+          start.await();
+          List<String> last = null;
+          for (int round = 0; round < ROUNDS; round++) {
+            last = parseAll(addressParser);
+            assertEquals(expected, last);
+          }
+          return last;
+        }));
+      }
+      start.countDown();
+      for (Future<List<String>> future : futures) {
+        assertEquals(expected, future.get(60, TimeUnit.SECONDS));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    System.out.println("  " + THREADS + " threads parsed " + THREADS * ROUNDS * CORPUS.size() + " addresses OK");
+  }
+
+  /**
+   * Parse the corpus, recording the formatted result or the exception message
+   * for each entry.
+   */
+  private static List<String> parseAll(AddressParser addressParser) {
+    List<String> results = new ArrayList<>();
+    for (String addressString : CORPUS) {
+      try {
+        results.add(addressParser.parse(addressString).format());
+      } catch (Exception ex) {
+        results.add(ex.toString());
+      }
+    }
+    return results;
+  }
+}
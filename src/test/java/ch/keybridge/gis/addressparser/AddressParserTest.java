@@ -15,15 +15,46 @@
 package ch.keybridge.gis.addressparser;
 
 import ch.keybridge.gis.addressparser.us.Formatter;
+import ch.keybridge.gis.addressparser.us.ParseBudget;
+import ch.keybridge.gis.addressparser.us.ParseCache;
+import ch.keybridge.gis.addressparser.us.ParseEvent;
+import ch.keybridge.gis.addressparser.us.ParseMetrics;
+import ch.keybridge.gis.addressparser.us.ParseOutcome;
+import ch.keybridge.gis.addressparser.us.ParseRoute;
+import ch.keybridge.gis.addressparser.us.ParseStage;
+import ch.keybridge.gis.addressparser.us.ParseStatistics;
+import ch.keybridge.gis.addressparser.us.ParseTimeoutException;
+import ch.keybridge.gis.addressparser.us.ParsedAddress;
+import ch.keybridge.gis.addressparser.us.ParserEngine;
 import ch.keybridge.gis.addressparser.us.Parser;
+import ch.keybridge.gis.addressparser.us.ReferenceData;
 import ch.keybridge.gis.addressparser.us.enumerated.AddressComponentKey;
 import ch.keybridge.gis.addressparser.us.enumerated.EnumeratedCountry;
+import ch.keybridge.gis.addressparser.us.regex.KeywordAutomaton;
+import ch.keybridge.gis.addressparser.us.regex.RegexPatternRegistry;
+import ch.keybridge.gis.addressparser.us.regex.StateSpellingCorrector;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.stream.Collectors;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -59,6 +90,33 @@ public class AddressParserTest {
     }
   }
 
+  @Test
+  public void testParseAddressRoute() throws Exception {
+    AddressParser routeParser = new AddressParser();
+    /**
+     * A US street address is parsed and standardized.
+     */
+    Address parsed = routeParser.parseAddress(Address.getInstance("1600 tysons blvd., suite 1500", "mclean", "va", "22102", "US"));
+    assertEquals("1600 Tysons Blvd, Ste 1500", parsed.getStreet());
+    assertEquals("VA", parsed.getState());
+    assertEquals(1, routeParser.getRouteCount(AddressRoute.PARSED));
+    /**
+     * PO boxes, non-US addresses and streets without a number are cleaned up.
+     */
+    assertEquals("Post Office Box 123", routeParser.parseAddress(Address.getInstance("PO Box 123", "mclean", "va", "22102", "US")).getStreet());
+    assertEquals("10 Downing St", routeParser.parseAddress(Address.getInstance("10 downing st", "London", null, "SW1A 2AA", "GB")).getStreet());
+    assertEquals("Wagner Annex", routeParser.parseAddress(Address.getInstance("wagner annex", "University Park", "PA", "16802", "US")).getStreet());
+    assertEquals(1, routeParser.getRouteCount(AddressRoute.PO_BOX));
+    assertEquals(1, routeParser.getRouteCount(AddressRoute.NON_US));
+    assertEquals(1, routeParser.getRouteCount(AddressRoute.NO_NUMBER));
+    /**
+     * BOX must be a whole word.
+     */
+    assertEquals(AddressRoute.PARSED, AddressParser.route(Address.getInstance("12 Boxwood Ln", null, null, null, "us")));
+    assertEquals(AddressRoute.PO_BOX, AddressParser.route(Address.getInstance("P.O. box 7", null, null, null, "US")));
+    System.out.println("  parseAddress routes OK");
+  }
+
   @Test
   public void testParseAddress() {
     try {
@@ -124,4 +182,393 @@ public class AddressParserTest {
     }
   }
 
+  @Test
+  public void testParseAll() {
+    List<String> addresses = Arrays.asList(addressString,
+                                           "",
+                                           "123 Main St, Springfield, IL 62701",
+                                           null,
+                                           "Main St and Oak Ave, Springfield, IL 62701");
+    List<ParseResult> results = addressParser.parseAll(addresses);
+    assertEquals(addresses.size(), results.size());
+    for (int i = 0; i < addresses.size(); i++) {
+      assertEquals(addresses.get(i), results.get(i).getInput());
+    }
+    assertTrue(results.get(0).isSuccess());
+    assertFalse(results.get(1).isSuccess());
+    assertNotNull(results.get(1).getError());
+    assertFalse(results.get(3).isSuccess());
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<ParseResult> executorResults = addressParser.parseAll(addresses, executor);
+      assertEquals(results.stream().map(ParseResult::toString).collect(Collectors.toList()),
+                   executorResults.stream().map(ParseResult::toString).collect(Collectors.toList()));
+    } finally {
+      executor.shutdown();
+    }
+    System.out.println("  parse all " + results.size() + " addresses OK");
+  }
+
+  @Test
+  public void testParseCache() throws Exception {
+    ParseCache cache = new ParseCache(100000);
+    Parser cachedParser = new Parser(cache);
+    Map<AddressComponentKey, String> expected = parser.parse(addressString);
+    /**
+     * Differently punctuated inputs share one cleaned key.
+     */
+    assertEquals(expected, cachedParser.parse(addressString));
+    assertEquals(expected, cachedParser.parse("1600 Tysons Blvd, Suite 1500 McLean VA 22102"));
+    assertEquals(1, cache.getMissCount());
+    assertEquals(1, cache.getHitCount());
+    /**
+     * Returned maps are copies.
+     */
+    cachedParser.parse(addressString).clear();
+    assertEquals(expected, cachedParser.parse(addressString));
+    /**
+     * Unrecognized input is cached too.
+     */
+    assertEquals(parser.parse("!!!###"), cachedParser.parse("!!!###"));
+    System.out.println("  " + cache + " OK");
+    /**
+     * Stay within the maximum weight.
+     */
+    ParseCache smallCache = new ParseCache(200);
+    Parser smallCachedParser = new Parser(smallCache);
+    for (int i = 0; i < 100; i++) {
+      smallCachedParser.parse(i + " Main St, Springfield, IL 62701");
+    }
+    assertTrue(smallCache.getWeight() <= smallCache.getMaximumWeight());
+    assertTrue(smallCache.getEvictionCount() > 0);
+    /**
+     * A small cache still caches, whatever the number of processors.
+     */
+    smallCache.resetCounts();
+    smallCachedParser.parse(addressString);
+    smallCachedParser.parse(addressString);
+    assertEquals(1, smallCache.getHitCount());
+    ParseCache modestCache = new ParseCache(10000);
+    Parser modestCachedParser = new Parser(modestCache);
+    for (int i = 0; i < 5; i++) {
+      modestCachedParser.parse(addressString);
+    }
+    assertEquals(4, modestCache.getHitCount());
+    assertEquals(0, modestCache.getEvictionCount());
+  }
+
+  @Test
+  public void testTokenEngine() throws Exception {
+    Parser tokenParser = new Parser(ParserEngine.TOKEN, null);
+    /**
+     * The engines agree on well formed addresses.
+     */
+    for (String address : new String[]{addressString,
+                                       "123 N Main St Apt 4B, Springfield, IL 62701-1234",
+                                       "700 E Pennsylvania Ave NW Washington DC 20003",
+                                       "1234 Wheat Ridge Ave Wheat Ridge CO",
+                                       "Main St and Oak Ave, Springfield, IL 62701",
+                                       "Springfield, IL 62701"}) {
+      assertEquals(address, parser.parse(address), tokenParser.parse(address));
+    }
+    Map<AddressComponentKey, String> parseMap = tokenParser.parse("221B Baker Street London");
+    assertEquals("221B", parseMap.get(AddressComponentKey.NUMBER));
+    assertEquals("London", parseMap.get(AddressComponentKey.CITY));
+    assertTrue(tokenParser.parse("!!!###").isEmpty());
+    System.out.println("  token engine OK");
+  }
+
+  @Test
+  public void testParseBudget() throws Exception {
+    /**
+     * A generous budget does not change the result.
+     */
+    Parser budgetParser = new Parser(ParserEngine.REGEX, null, new ParseBudget(10, TimeUnit.SECONDS));
+    assertEquals(parser.parse(addressString), budgetParser.parse(addressString));
+    /**
+     * Repeated intersection words that cannot end in a last line are rejected
+     * by the pre-classifier without running a regex.
+     */
+    assertNull(budgetParser.parse("and at and at and at and at and at and at and at and at"));
+    assertEquals(1, budgetParser.getRouteCount(ParseRoute.NO_MATCH));
+    /**
+     * Repeated intersection words before a malformed zip code backtrack
+     * catastrophically without a budget.
+     */
+    ParseBudget budget = new ParseBudget(10, TimeUnit.SECONDS, 100000);
+    AddressParser budgetAddressParser = new AddressParser(ParserEngine.REGEX, null, budget);
+    ParseResult result = budgetAddressParser.parseSafely("and at and at and at and at and at and at and at and at 2210");
+    assertFalse(result.isSuccess());
+    assertTrue(result.isTimedOut());
+    ParseTimeoutException timeout = (ParseTimeoutException) result.getError();
+    assertEquals(100001, timeout.getSteps());
+    assertEquals(1, budget.getTimeoutCount());
+    assertTrue(budgetAddressParser.parseSafely(addressString).isSuccess());
+    assertEquals(2, budget.getParseCount());
+    /**
+     * A parse matched again after a spelling correction draws on one budget.
+     */
+    budgetParser = new Parser(ParserEngine.REGEX, null, budget);
+    assertEquals("Suite 4", budgetParser.parse("123 Main St Suiet 4 Alexandria VA 22314").get(AddressComponentKey.LINE2));
+    assertEquals(3, budget.getParseCount());
+    System.out.println("  " + budget + " OK");
+  }
+
+  @Test
+  public void testParseMetrics() throws Exception {
+    ParseStatistics statistics = new ParseStatistics();
+    AddressParser metricsParser = new AddressParser(ParserEngine.REGEX, null, null, statistics);
+    metricsParser.parse(addressString);
+    metricsParser.parse("Main St and Elm St, Fairfax, Virginia");
+    metricsParser.parse("McLean, VA 22102");
+    metricsParser.parseSafely("1600 Tysons Blvd McLean");
+    assertEquals(1, statistics.getCount(ParseRoute.STREET_ADDRESS, ParseOutcome.STREET_ADDRESS));
+    assertEquals(1, statistics.getCount(ParseRoute.INTERSECTION, ParseOutcome.INTERSECTION));
+    assertEquals(1, statistics.getCount(ParseRoute.LAST_LINE, ParseOutcome.LAST_LINE));
+    assertEquals(1, statistics.getCount(ParseOutcome.NOT_RECOGNIZED));
+    assertEquals(1, statistics.getCount(ParseEvent.STATE_CORRECTION));
+    assertEquals(1, statistics.getLatency(ParseRoute.STREET_ADDRESS).getCount());
+    assertEquals(4, statistics.getLatency(ParseStage.CLEAN).getCount());
+    assertEquals(4, statistics.getLatency(ParseStage.MATCH).getCount());
+    assertEquals(4, statistics.getLatency(ParseStage.NORMALIZE).getCount());
+    /**
+     * Timed out parses are recorded.
+     */
+    Parser budgetParser = new Parser(ParserEngine.REGEX, null, new ParseBudget(10, TimeUnit.SECONDS, 100000), statistics);
+    try {
+      budgetParser.parse("and at and at and at and at and at and at and at and at 2210");
+      fail("Expected a timeout");
+    } catch (ParseTimeoutException ex) {
+      assertEquals(1, statistics.getCount(ParseRoute.INTERSECTION, ParseOutcome.TIMED_OUT));
+    }
+    assertSame(ParseMetrics.NONE, parser.getMetrics());
+    System.out.println("  " + statistics.getLatency(ParseStage.MATCH) + " OK");
+  }
+
+  @Test
+  public void testMonitor() throws Exception {
+    ParseCache cache = new ParseCache(100000);
+    AddressParser monitoredParser = new AddressParser(ParserEngine.REGEX, cache, null, new ParseStatistics());
+    ObjectName name = AddressParserMonitor.register(monitoredParser, "test");
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      monitoredParser.parse(addressString);
+      monitoredParser.parse(addressString);
+      monitoredParser.parseSafely("1600 Tysons Blvd McLean");
+      assertEquals(3L, server.getAttribute(name, "ParseCount"));
+      assertEquals(3L, server.getAttribute(name, "FormatCount"));
+      assertEquals(1.0 / 3, (Double) server.getAttribute(name, "NullResultRate"), 1e-9);
+      assertEquals(1L, server.getAttribute(name, "CacheHitCount"));
+      assertEquals(ReferenceData.getCityAliasMap().values().stream().mapToInt(Map::size).sum(), server.getAttribute(name, "CityAliasCount"));
+      assertEquals(ReferenceData.getExceptionCityMap().values().stream().mapToInt(List::size).sum(), server.getAttribute(name, "ExceptionCityCount"));
+      server.invoke(name, "resetCounters", null, null);
+      assertEquals(0L, server.getAttribute(name, "ParseCount"));
+      assertEquals(0L, server.getAttribute(name, "CacheHitCount"));
+      /**
+       * Reloading replaces the reference data and empties the cache.
+       */
+      Date loadedAt = (Date) server.getAttribute(name, "ReferenceDataLoadedAt");
+      server.invoke(name, "reloadReferenceData", null, null);
+      assertFalse(((Date) server.getAttribute(name, "ReferenceDataLoadedAt")).before(loadedAt));
+      assertEquals(0L, cache.size());
+      assertEquals(addressParser.parse(addressString), monitoredParser.parse(addressString));
+    } finally {
+      server.unregisterMBean(name);
+    }
+    System.out.println("  address parser monitor OK");
+  }
+
+  @Test
+  public void testStateSpellingCorrector() {
+    /**
+     * The right-most, longest whole-word state name is replaced.
+     */
+    assertEquals("77 MASSACHUSETTS AVE CAMBRIDGE MA 02139", StateSpellingCorrector.nameToAbbreviation("77 Massachusetts Ave Cambridge Massachusetts 02139"));
+    assertEquals("12 MAIN ST CHARLESTON WV", StateSpellingCorrector.nameToAbbreviation("12 Main St Charleston West Virginia"));
+    assertEquals("1 ROMAINE ST LITTLE ROCK AR", StateSpellingCorrector.nameToAbbreviation("1 Romaine St Little Rock Arkansas"));
+    assertEquals("1 Main St Springfield IL", StateSpellingCorrector.nameToAbbreviation("1 Main St Springfield IL"));
+
+    KeywordAutomaton automaton = new KeywordAutomaton(Arrays.asList("HE", "SHE", "HERS", "HIS"));
+    assertEquals("HERS", automaton.findLast("USHERS", false).getKeyword());
+    assertEquals(2, automaton.findLast("USHERS", false).getStart());
+    assertEquals("SHE", automaton.findLast("USHE", false).getKeyword());
+    assertEquals("HE", automaton.findLast("A HE USHERS", true).getKeyword());
+    assertNull(automaton.findLast("USHERS", true));
+    System.out.println("  state spelling corrector OK");
+  }
+
+  @Test
+  public void testSpellingCorrection() throws Exception {
+    /**
+     * Misspelled keywords the parse misses are corrected and matched again.
+     * Only the corrected words change case.
+     */
+    Map<AddressComponentKey, String> m = parser.parse("101 Main St Pittsburg Pensylvania");
+    assertEquals("Main", m.get(AddressComponentKey.STREET));
+    assertEquals("St", m.get(AddressComponentKey.TYPE));
+    assertEquals("Pittsburg", m.get(AddressComponentKey.CITY));
+    assertEquals("Pennsylvania", m.get(AddressComponentKey.STATE));
+    assertEquals("Suite 4", parser.parse("123 Main St Suiet 4 Alexandria VA 22314").get(AddressComponentKey.LINE2));
+    assertEquals("WEST VIRGINIA", parser.parse("12 MAIN ST CHARLESTON WEST VIRGINA").get(AddressComponentKey.STATE));
+    m = new Parser(ParserEngine.TOKEN, null).parse("123 Main Boulevrd Suite 4 Alexandria VA 22314");
+    assertEquals("Main", m.get(AddressComponentKey.STREET));
+    assertEquals("Boulevard", m.get(AddressComponentKey.TYPE));
+    /**
+     * Names near a keyword are left alone. The city after a street without a
+     * type is not a misspelled street type.
+     */
+    m = parser.parse("123 Glenn Rd, Main, VA 22314");
+    assertEquals("Glenn", m.get(AddressComponentKey.STREET));
+    assertEquals("Main", m.get(AddressComponentKey.CITY));
+    String[][] cities = {
+      {"100 Broadway Lansing NY 14882", "Lansing", "NY"},
+      {"5 Broadway Paris ME 04281", "Paris", "ME"},
+      {"9 Elm Perry Hall MD 21128", "Perry Hall", "MD"}};
+    for (String[] city : cities) {
+      m = parser.parse(city[0]);
+      assertNull(city[0], m.get(AddressComponentKey.TYPE));
+      assertEquals(city[0], city[1], m.get(AddressComponentKey.CITY));
+      assertEquals(city[0], city[2], m.get(AddressComponentKey.STATE));
+    }
+    /**
+     * A street whose first word is near a direction is not given a direction.
+     */
+    String[][] streets = {
+      {"100 Youth Center Rd, Springfield, IL 62701", "Youth Center"},
+      {"100 Norte Vista Dr, Springfield, IL 62701", "Norte Vista"},
+      {"100 Worth Valley Rd, Springfield, IL 62701", "Worth Valley"},
+      {"100 Mouth Creek Rd, Springfield, IL 62701", "Mouth Creek"}};
+    for (String[] street : streets) {
+      m = parser.parse(street[0]);
+      assertNull(street[0], m.get(AddressComponentKey.PREDIR));
+      assertEquals(street[0], street[1], m.get(AddressComponentKey.STREET));
+    }
+    /**
+     * No correction without the flag.
+     */
+    assertNull(parser.parse("123 Main St Alexandria Virgina", false));
+    ParseStatistics statistics = new ParseStatistics();
+    Parser statisticsParser = new Parser(ParserEngine.REGEX, null, null, statistics);
+    statisticsParser.parse("123 Main St Alexandria Virgina");
+    assertEquals(1, statistics.getCount(ParseEvent.SPELLING_CORRECTION));
+    /**
+     * A parse matched again is recorded once, with the route and outcome of
+     * the match returned.
+     */
+    statisticsParser.parse("123 Main St Suiet 4 Alexandria VA 22314");
+    assertEquals(2, statistics.getCount(ParseEvent.SPELLING_CORRECTION));
+    assertEquals(2, statisticsParser.getRouteCount(ParseRoute.STREET_ADDRESS));
+    assertEquals(2, statistics.getCount(ParseRoute.STREET_ADDRESS));
+    assertEquals(2, statistics.getCount(ParseOutcome.STREET_ADDRESS));
+    assertEquals(2, statistics.getLatency(ParseStage.MATCH).getCount());
+    assertEquals(2, statistics.getLatency(ParseStage.PARSE).getCount());
+    System.out.println("  spelling correction OK");
+  }
+
+  @Test
+  public void testToProperCase() throws Exception {
+    assertEquals("Mclean", Formatter.toProperCase("McLEAN"));
+    assertEquals("O'Neil-Smith 4b", Formatter.toProperCase("O'NEIL-SMITH 4B"));
+    assertEquals("St_paul 1st", Formatter.toProperCase("st_paul 1ST"));
+    assertNull(Formatter.toProperCase(""));
+    /**
+     * Already proper case strings are returned as is.
+     */
+    String tysons = "Tysons Corner";
+    assertSame(tysons, Formatter.toProperCase(tysons));
+    /**
+     * Same result as the regex implementation.
+     */
+    for (String string : Arrays.asList("1600 TYSONS BLVD", "p.o. box 12", "éLAN ÉCOLE", "a  b\tc", "_x-y z9Q")) {
+      Matcher m = RegexPatternRegistry.PROPER_CASE.matcher(string.toLowerCase());
+      StringBuffer sb = new StringBuffer();
+      while (m.find()) {
+        m.appendReplacement(sb, m.group(1) + m.group(2).toUpperCase());
+      }
+      m.appendTail(sb);
+      assertEquals(sb.toString(), Formatter.toProperCase(string));
+    }
+    /**
+     * A reused target map gives the same result as a new map.
+     */
+    Map<AddressComponentKey, String> target = new EnumMap<>(AddressComponentKey.class);
+    for (String addressString : Arrays.asList("1600 Tysons Blvd., Suite 1500, McLean, VA  22102",
+                                              "123 N MAIN ST APT 4B SPRINGFIELD IL 62701-1234",
+                                              "100 First Street, St Louis, MO 63101")) {
+      Map<AddressComponentKey, String> parsed = parser.parse(addressString);
+      assertEquals(formatter.normalizeParsedAddress(parsed), formatter.normalizeParsedAddress(parsed, target));
+    }
+    System.out.println("  proper case OK");
+  }
+
+  @Test
+  public void testNormalizeNullComponent() throws Exception {
+    /**
+     * A street named like a designator leaves a null pre-direction in the
+     * parse. Normalization skips null components; it used to throw a
+     * NullPointerException.
+     */
+    Map<AddressComponentKey, String> parsed = parser.parse("100 North Street, Springfield, IL 62701");
+    assertTrue(parsed.containsKey(AddressComponentKey.PREDIR));
+    assertNull(parsed.get(AddressComponentKey.PREDIR));
+    Map<AddressComponentKey, String> normalized = formatter.normalizeParsedAddress(parsed);
+    assertFalse(normalized.containsKey(AddressComponentKey.PREDIR));
+    assertEquals("North", normalized.get(AddressComponentKey.STREET));
+    assertEquals("St", normalized.get(AddressComponentKey.TYPE));
+    assertEquals("100 North St", addressParser.parse("100 North Street, Springfield, IL 62701").getStreet());
+    System.out.println("  normalize null component OK");
+  }
+
+  @Test
+  public void testParsedAddress() throws Exception {
+    /**
+     * A parsed address behaves like an EnumMap.
+     */
+    Map<AddressComponentKey, String> expected = new EnumMap<>(AddressComponentKey.class);
+    ParsedAddress actual = new ParsedAddress();
+    for (Map<AddressComponentKey, String> map : Arrays.asList(expected, actual)) {
+      map.put(AddressComponentKey.ZIP, "22102");
+      map.put(AddressComponentKey.NUMBER, "1600");
+      map.put(AddressComponentKey.PREDIR, null);
+      map.put(AddressComponentKey.TLID, "x");
+      map.remove(AddressComponentKey.TLID);
+      map.remove(AddressComponentKey.CITY);
+    }
+    assertEquals(expected, actual);
+    assertEquals(actual, expected);
+    assertEquals(expected.hashCode(), actual.hashCode());
+    assertEquals(expected.toString(), actual.toString());
+    assertEquals(3, actual.size());
+    assertTrue(actual.containsKey(AddressComponentKey.PREDIR));
+    assertFalse(actual.containsKey(AddressComponentKey.TLID));
+
+    ParsedAddress copy = actual.clone();
+    for (Map.Entry<AddressComponentKey, String> entry : copy.entrySet()) {
+      if (entry.getKey() == AddressComponentKey.NUMBER) {
+        entry.setValue("1601");
+      }
+    }
+    assertEquals("1600", actual.get(AddressComponentKey.NUMBER));
+    assertEquals("1601", copy.get(AddressComponentKey.NUMBER));
+    copy.entrySet().removeIf(e -> e.getValue() == null);
+    assertEquals(2, copy.size());
+
+    Map<AddressComponentKey, String> parsed = parser.parse(addressString);
+    assertTrue(parsed instanceof ParsedAddress);
+    assertEquals(parsed, new ParsedAddress(new EnumMap<>(parsed)));
+    /**
+     * Components are slices of the input until they are read.
+     */
+    ParsedAddress sliced = (ParsedAddress) parser.parse(addressString);
+    CharSequence zip = sliced.getSlice(AddressComponentKey.ZIP);
+    assertFalse(zip instanceof String);
+    assertEquals("22102", zip.toString());
+    assertEquals("22102", sliced.get(AddressComponentKey.ZIP));
+    assertTrue(sliced.getSlice(AddressComponentKey.ZIP) instanceof String);
+    assertNull(sliced.getSlice(AddressComponentKey.STREET2));
+    assertEquals(parsed, sliced.clone());
+    System.out.println("  parsed address " + actual + " OK");
+  }
+
 }
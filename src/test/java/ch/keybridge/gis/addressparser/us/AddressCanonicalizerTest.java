@@ -0,0 +1,106 @@
+/*
+ *  Copyright (C) 2015 Caulfield IP Holdings (Caulfield) and/or its affiliates.
+ *  All rights reserved. Use is subject to license terms.
+ *
+ *  Software Code is protected by Caulfield Copyrights. Caulfield hereby reserves
+ *  all rights in and to Caulfield Copyrights and no license is granted under
+ *  Caulfield Copyrights in this Software License Agreement. Caulfield generally
+ *  licenses Caulfield Copyrights for commercialization pursuant to the terms of
+ *  either Caulfield's Standard Software Source Code License Agreement or
+ *  Caulfield's Standard Product License Agreement.
+ *
+ *  A copy of either License Agreement can be obtained on request by email from:
+ *  info@caufield.org.
+ */
+package ch.keybridge.gis.addressparser.us;
+
+import ch.keybridge.gis.addressparser.us.regex.RegexPatternRegistry;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Property tests: the canonicalizer must produce the same output as the regex
+ * replacement chains it replaces, for any input.
+ *
+ * @author Jesse Caulfield <jesse@caulfield.org>
+ */
+public class AddressCanonicalizerTest {
+
+  /**
+   * Input fragments weighted towards the characters and tokens the
+   * canonicalizer treats specially.
+   */
+  private static final String[] FRAGMENTS = {
+    "a", "Z", "7", "_", " ", "  ", "\t", "\n", "\r\n", "\u000B", "\f", "\u0001", " ", "\u0085",
+    ".", ",", "-", "'", "`", "#", "&", "(", ")", "/", "\\", "!", "?", "@", "~", "{", "[", "^", "$",
+    "é", "ß", "İ", "🏠",
+    "PO ", "po ", "Po", "P.O.", "p.o.", "P. O.", "p. o.", "P.", "P", "O.", "BOX", "Box 12",
+    "1600", "Tysons", "Blvd", "Suite", "McLean", "VA", "22102-1234"
+  };
+
+  @Test
+  public void testClean() {
+    assertEquals("1600 Tysons Blvd Suite 1500 McLean VA 22102", AddressCanonicalizer.clean("1600 Tysons Blvd., Suite 1500, McLean, VA  22102"));
+    assertEquals("", AddressCanonicalizer.clean(" ,.- "));
+    String clean = "12 Main St";
+    assertEquals(clean, AddressCanonicalizer.clean(clean));
+    Random random = new Random(20240611L);
+    for (int i = 0; i < 20000; i++) {
+      String raw = randomString(random);
+      assertEquals(escape(raw), escape(cleanRegex(raw)), escape(AddressCanonicalizer.clean(raw)));
+    }
+    System.out.println("  canonicalizer clean OK");
+  }
+
+  @Test
+  public void testCanonicalStreet() {
+    assertEquals("Post Office Box 123", AddressCanonicalizer.canonicalStreet("PO Box 123"));
+    assertEquals("Post Office Box 55", AddressCanonicalizer.canonicalStreet("P.O. Box 55"));
+    assertEquals("Post Office Box 4020", AddressCanonicalizer.canonicalStreet("p. o. box 4020 "));
+    Random random = new Random(20240612L);
+    for (int i = 0; i < 20000; i++) {
+      String street = randomString(random);
+      if (street.isEmpty()) {
+        continue;
+      }
+      assertEquals(escape(street), escape(canonicalStreetReplace(street)), escape(AddressCanonicalizer.canonicalStreet(street)));
+    }
+    System.out.println("  canonicalizer street OK");
+  }
+
+  /**
+   * The regex implementation formerly in Parser.getCleanSttring.
+   */
+  private static String cleanRegex(String raw) {
+    String cleaned = RegexPatternRegistry.CLEANUP.matcher(raw).replaceAll(" ");
+    return RegexPatternRegistry.WHITESPACE.matcher(cleaned).replaceAll(" ").trim();
+  }
+
+  /**
+   * The replace chain formerly in AddressParser.parseAddress.
+   */
+  private static String canonicalStreetReplace(String street) {
+    return Formatter.toProperCase(street.toUpperCase()
+      .replace("PO ", "POST OFFICE ")
+      .replace("P.O.", "POST OFFICE")
+      .replace("P. O.", "POST OFFICE")).trim();
+  }
+
+  private static String randomString(Random random) {
+    StringBuilder sb = new StringBuilder();
+    for (int n = random.nextInt(12); n > 0; n--) {
+      sb.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+    }
+    return sb.toString();
+  }
+
+  private static String escape(String string) {
+    StringBuilder sb = new StringBuilder();
+    for (char c : string.toCharArray()) {
+      sb.append(c >= ' ' && c < 0x7f ? String.valueOf(c) : String.format("\\u%04x", (int) c));
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ *  Copyright (C) 2015 Caulfield IP Holdings (Caulfield) and/or its affiliates.
+ *  All rights reserved. Use is subject to license terms.
+ *
+ *  Software Code is protected by Caulfield Copyrights. Caulfield hereby reserves
+ *  all rights in and to Caulfield Copyrights and no license is granted under
+ *  Caulfield Copyrights in this Software License Agreement. Caulfield generally
+ *  licenses Caulfield Copyrights for commercialization pursuant to the terms of
+ *  either Caulfield's Standard Software Source Code License Agreement or
+ *  Caulfield's Standard Product License Agreement.
+ *
+ *  A copy of either License Agreement can be obtained on request by email from:
+ *  info@caufield.org.
+ */
+package ch.keybridge.gis.addressparser.us;
+
+import ch.keybridge.gis.addressparser.us.regex.AddressComponentPattern;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Property tests: the pre-classifier may only skip a pattern that cannot match.
+ *
+ * @author Jesse Caulfield <jesse@caulfield.org>
+ */
+public class AddressClassifierTest {
+
+  /**
+   * Address words weighted towards the tokens the classifier looks for.
+   */
+  private static final String[] WORDS = {
+    "1600", "12", "N12", "4b", "One", "twelve", "Oneida", "Tysons", "Blvd", "Main", "St", "Suite", "#",
+    "and", "AT", "&", "@", "Andover", "Atlanta", "McLean", "Fairfax", "VA", "va", "Virginia", "CA", "XVA",
+    "22102", "22102-1234", "2210", "PO", "Box"
+  };
+
+  @Test
+  public void testClassify() {
+    assertEquals(ParseRoute.STREET_ADDRESS, AddressClassifier.classify("1600 Tysons Blvd McLean VA 22102"));
+    assertEquals(ParseRoute.STREET_ADDRESS, AddressClassifier.classify("One Main St Fairfax VA"));
+    assertEquals(ParseRoute.INTERSECTION, AddressClassifier.classify("Main St and Elm St Fairfax VA"));
+    assertEquals(ParseRoute.INTERSECTION, AddressClassifier.classify("Main St & Elm St 22030"));
+    assertEquals(ParseRoute.LAST_LINE, AddressClassifier.classify("McLean VA 22102"));
+    assertEquals(ParseRoute.LAST_LINE, AddressClassifier.classify("Atlanta GA"));
+    assertEquals(ParseRoute.LAST_LINE, AddressClassifier.classify(""));
+    assertEquals(ParseRoute.NO_MATCH, AddressClassifier.classify("1600 Tysons Blvd McLean"));
+    assertEquals(ParseRoute.NO_MATCH, AddressClassifier.classify("and at and at and at"));
+    /**
+     * The route never changes which pattern matches.
+     */
+    Random random = new Random(20240613L);
+    for (int i = 0; i < 5000; i++) {
+      String address = AddressCanonicalizer.clean(randomAddress(random));
+      ParseRoute route = AddressClassifier.classify(address);
+      if (route != ParseRoute.STREET_ADDRESS) {
+        assertFalse(address, AddressComponentPattern.P_STREET_ADDRESS.getPattern().matcher(address).matches());
+      }
+      if (route == ParseRoute.LAST_LINE || route == ParseRoute.NO_MATCH) {
+        assertFalse(address, AddressComponentPattern.P_CORNER.getPattern().matcher(address).find()
+          && AddressComponentPattern.P_INTERSECTION.getPattern().matcher(address).matches());
+      }
+      if (route == ParseRoute.NO_MATCH) {
+        assertFalse(address, AddressComponentPattern.P_CSZ.getPattern().matcher(address).matches());
+      }
+    }
+    System.out.println("  classifier OK");
+  }
+
+  private static String randomAddress(Random random) {
+    StringBuilder sb = new StringBuilder();
+    for (int n = 1 + random.nextInt(7); n > 0; n--) {
+      sb.append(WORDS[random.nextInt(WORDS.length)]).append(random.nextInt(5) == 0 ? ", " : " ");
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ *  Copyright (C) 2015 Caulfield IP Holdings (Caulfield) and/or its affiliates.
+ *  All rights reserved. Use is subject to license terms.
+ *
+ *  Software Code is protected by Caulfield Copyrights. Caulfield hereby reserves
+ *  all rights in and to Caulfield Copyrights and no license is granted under
+ *  Caulfield Copyrights in this Software License Agreement. Caulfield generally
+ *  licenses Caulfield Copyrights for commercialization pursuant to the terms of
+ *  either Caulfield's Standard Software Source Code License Agreement or
+ *  Caulfield's Standard Product License Agreement.
+ *
+ *  A copy of either License Agreement can be obtained on request by email from:
+ *  info@caufield.org.
+ */
+package ch.keybridge.gis.addressparser.us;
+
+import ch.keybridge.gis.addressparser.us.enumerated.AddressComponentKey;
+import java.util.Map;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests of the approximate city name lookup.
+ *
+ * @author Jesse Caulfield <jesse@caulfield.org>
+ */
+public class CityNameIndexTest {
+
+  @Test
+  public void testFind() {
+    CityNameIndex index = ReferenceData.getCityNameIndex();
+    assertEquals("ALEXANDRIA", index.find("ALEXANDRIA", "VA"));
+    assertEquals("ALEXANDRIA", index.find("ALEXANDIRA", "VA"));
+    assertEquals("SAN FRANCISCO", index.find("SAN FRANSISCO", "CA"));
+    assertEquals("SPRINGFIELD", index.find("SPRINGFEILD", "IL"));
+    /**
+     * Aliases resolve to their city, white space ignored.
+     */
+    assertEquals("MC LEAN", index.find("MCLEAN", "VA"));
+    assertEquals("MC LEAN", index.find("MCLAEN", "VA"));
+    assertEquals("NEW YORK", index.find("NY", "NY"));
+    /**
+     * A canonical city is not resolved as an alias of another city.
+     */
+    assertEquals("PORTLAND", index.find("PORTLAND", "ME"));
+    /**
+     * Unknown and short names and unknown states are not resolved.
+     */
+    assertNull(index.find("XYZZYQUUX", "TX"));
+    assertNull(index.find("ALXA", "VA"));
+    assertNull(index.find("ALEXANDRIA", "XX"));
+    System.out.println("  city name index OK");
+  }
+
+  /**
+   * Every canonical city resolves to itself.
+   */
+  @Test
+  public void testCanonicalCities() {
+    ZipCodeIndex zipCodeIndex = ReferenceData.getZipCodeIndex();
+    CityNameIndex index = ReferenceData.getCityNameIndex();
+    for (int record = 0; record < zipCodeIndex.size(); record++) {
+      String city = zipCodeIndex.getCity(record);
+      assertEquals(city, index.find(city, zipCodeIndex.getState(record)));
+    }
+    System.out.println("  city name index " + zipCodeIndex.size() + " zip code cities OK");
+  }
+
+  @Test
+  public void testNormalize() {
+    Map<AddressComponentKey, String> parsed = new ParsedAddress();
+    parsed.put(AddressComponentKey.CITY, "Bismark");
+    parsed.put(AddressComponentKey.STATE, "ND");
+    assertEquals("Bismarck", new Formatter().normalizeParsedAddress(parsed).get(AddressComponentKey.CITY));
+    parsed.put(AddressComponentKey.CITY, "Alexandria");
+    parsed.put(AddressComponentKey.STATE, "VA");
+    assertEquals("Alexandria", new Formatter().normalizeParsedAddress(parsed).get(AddressComponentKey.CITY));
+    /**
+     * A known alias is left as given; a misspelled one resolves to its city.
+     */
+    String[][] aliases = {
+      {"Graves Mill", "VA"},
+      {"Canal Street", "NY"},
+      {"New Haven", "OH"},
+      {"Mclean", "VA"}};
+    for (String[] alias : aliases) {
+      parsed.put(AddressComponentKey.CITY, alias[0]);
+      parsed.put(AddressComponentKey.STATE, alias[1]);
+      assertEquals(alias[0], new Formatter().normalizeParsedAddress(parsed).get(AddressComponentKey.CITY));
+    }
+    parsed.put(AddressComponentKey.CITY, "Mclaen");
+    parsed.put(AddressComponentKey.STATE, "VA");
+    assertEquals("Mc Lean", new Formatter().normalizeParsedAddress(parsed).get(AddressComponentKey.CITY));
+    System.out.println("  city name normalize OK");
+  }
+}
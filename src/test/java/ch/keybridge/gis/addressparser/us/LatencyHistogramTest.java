@@ -0,0 +1,69 @@
+/*
+ *  Copyright (C) 2015 Caulfield IP Holdings (Caulfield) and/or its affiliates.
+ *  All rights reserved. Use is subject to license terms.
+ *
+ *  Software Code is protected by Caulfield Copyrights. Caulfield hereby reserves
+ *  all rights in and to Caulfield Copyrights and no license is granted under
+ *  Caulfield Copyrights in this Software License Agreement. Caulfield generally
+ *  licenses Caulfield Copyrights for commercialization pursuant to the terms of
+ *  either Caulfield's Standard Software Source Code License Agreement or
+ *  Caulfield's Standard Product License Agreement.
+ *
+ *  A copy of either License Agreement can be obtained on request by email from:
+ *  info@caufield.org.
+ */
+package ch.keybridge.gis.addressparser.us;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Jesse Caulfield <jesse@caulfield.org>
+ */
+public class LatencyHistogramTest {
+
+  @Test
+  public void testBuckets() {
+    /**
+     * Every value falls in a bucket whose bounds are within 1/32 of it, and
+     * bucket indexes increase with the value.
+     */
+    Random random = new Random(20240614L);
+    int previous = -1;
+    for (long value = 0; value < 4096; value++) {
+      int index = LatencyHistogram.bucketIndex(value);
+      assertTrue(index == previous || index == previous + 1);
+      assertTrue(LatencyHistogram.highestEquivalentValue(index) >= value);
+      previous = index;
+    }
+    for (int i = 0; i < 100000; i++) {
+      long value = random.nextLong() >>> 24;
+      long highest = LatencyHistogram.highestEquivalentValue(LatencyHistogram.bucketIndex(value));
+      assertTrue(value + " " + highest, highest >= value && highest - value <= value / 32);
+    }
+  }
+
+  @Test
+  public void testPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.getValueAtPercentile(99, TimeUnit.NANOSECONDS));
+    for (long value = 1; value <= 10000; value++) {
+      histogram.record(value * 1000);
+    }
+    assertEquals(10000, histogram.getCount());
+    assertEquals(10, histogram.getMax(TimeUnit.MILLISECONDS));
+    assertEquals(5000.5, histogram.getMean(TimeUnit.MICROSECONDS), 1e-9);
+    long p50 = histogram.getValueAtPercentile(50, TimeUnit.MICROSECONDS);
+    long p99 = histogram.getValueAtPercentile(99, TimeUnit.MICROSECONDS);
+    assertTrue(String.valueOf(p50), p50 >= 5000 && p50 <= 5000 + 5000 / 32);
+    assertTrue(String.valueOf(p99), p99 >= 9900 && p99 <= 10000);
+    assertEquals(10000, histogram.getValueAtPercentile(100, TimeUnit.MICROSECONDS));
+    histogram.reset();
+    assertEquals(0, histogram.getCount());
+    System.out.println("  latency histogram OK");
+  }
+}
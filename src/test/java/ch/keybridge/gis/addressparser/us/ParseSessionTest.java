@@ -0,0 +1,101 @@
+/*
+ *  Copyright (C) 2015 Caulfield IP Holdings (Caulfield) and/or its affiliates.
+ *  All rights reserved. Use is subject to license terms.
+ *
+ *  Software Code is protected by Caulfield Copyrights. Caulfield hereby reserves
+ *  all rights in and to Caulfield Copyrights and no license is granted under
+ *  Caulfield Copyrights in this Software License Agreement. Caulfield generally
+ *  licenses Caulfield Copyrights for commercialization pursuant to the terms of
+ *  either Caulfield's Standard Software Source Code License Agreement or
+ *  Caulfield's Standard Product License Agreement.
+ *
+ *  A copy of either License Agreement can be obtained on request by email from:
+ *  info@caufield.org.
+ */
+package ch.keybridge.gis.addressparser.us;
+
+import ch.keybridge.gis.addressparser.us.enumerated.AddressComponentKey;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Property tests: after every keystroke the session must return the same
+ * parse as the token engine parsing the whole text.
+ *
+ * @author Jesse Caulfield <jesse@caulfield.org>
+ */
+public class ParseSessionTest {
+
+  /**
+   * Typed fragments weighted towards words the token engine classifies and
+   * the characters the clean up treats specially.
+   */
+  private static final String[] FRAGMENTS = {
+    "1600 ", "12", "4b", "One ", "Tysons ", "Blvd", "., ", "Main St ", "Suite 1500, ", "#5", "Apt ", "3rd Floor ",
+    " and ", "AT", " & ", "@", "N", "E ", "McLean", ", ", "VA", " Virginia", "West ", "22102", "-1234", " US",
+    "Wheat Ridge, CO", "P.O. Box ", "(", ")", "'", "`", "#", "  ", "\t", "é", "-"
+  };
+
+  @Test
+  public void testTyping() {
+    ParseSession session = new ParseSession();
+    assertTrue(session.getResult().isEmpty());
+    String address = "1600 Tysons Blvd., Suite 1500, McLean, VA  22102";
+    for (char c : address.toCharArray()) {
+      session.append(String.valueOf(c));
+    }
+    Map<AddressComponentKey, String> result = session.getResult();
+    assertEquals("1600", result.get(AddressComponentKey.NUMBER));
+    assertEquals("Tysons", result.get(AddressComponentKey.STREET));
+    assertEquals("Suite 1500", result.get(AddressComponentKey.LINE2));
+    assertEquals("McLean", result.get(AddressComponentKey.CITY));
+    assertEquals("22102", result.get(AddressComponentKey.ZIP));
+    assertEquals(address, session.getText());
+    /**
+     * Deleting back to the street keeps the words before it.
+     */
+    session.update("1600 Tysons Bl");
+    assertEquals(expected("1600 Tysons Bl"), session.getResult());
+    session.clear();
+    assertEquals("", session.getText());
+    System.out.println("  parse session OK");
+  }
+
+  @Test
+  public void testKeystrokes() {
+    Random random = new Random(20240615L);
+    for (int n = 0; n < 500; n++) {
+      ParseSession session = new ParseSession();
+      String text = "";
+      for (int k = 0; k < 40; k++) {
+        if (random.nextInt(6) == 0 && !text.isEmpty()) {
+          /**
+           * Delete or edit at a random position.
+           */
+          int cut = random.nextInt(text.length());
+          text = text.substring(0, cut) + (random.nextBoolean() ? FRAGMENTS[random.nextInt(FRAGMENTS.length)] : "");
+          assertEquals(text, expected(text), session.update(text));
+        } else {
+          String fragment = FRAGMENTS[random.nextInt(FRAGMENTS.length)];
+          for (char c : fragment.toCharArray()) {
+            text += c;
+            assertEquals(text, expected(text), session.append(String.valueOf(c)));
+          }
+        }
+        assertEquals(text, session.getText());
+      }
+    }
+    System.out.println("  parse session keystrokes OK");
+  }
+
+  /**
+   * The token engine parse of the whole text.
+   */
+  private static Map<AddressComponentKey, String> expected(String text) {
+    return TokenParser.parse(AddressCanonicalizer.clean(text));
+  }
+}
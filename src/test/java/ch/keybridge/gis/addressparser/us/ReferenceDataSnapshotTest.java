@@ -0,0 +1,158 @@
+/*
+ *  Copyright (C) 2015 Caulfield IP Holdings (Caulfield) and/or its affiliates.
+ *  All rights reserved. Use is subject to license terms.
+ *
+ *  Software Code is protected by Caulfield Copyrights. Caulfield hereby reserves
+ *  all rights in and to Caulfield Copyrights and no license is granted under
+ *  Caulfield Copyrights in this Software License Agreement. Caulfield generally
+ *  licenses Caulfield Copyrights for commercialization pursuant to the terms of
+ *  either Caulfield's Standard Software Source Code License Agreement or
+ *  Caulfield's Standard Product License Agreement.
+ *
+ *  A copy of either License Agreement can be obtained on request by email from:
+ *  info@caufield.org.
+ */
+package ch.keybridge.gis.addressparser.us;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import ch.keybridge.gis.addressparser.us.enumerated.AddressComponentKey;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ *
+ * @author Jesse Caulfield <jesse@caulfield.org>
+ */
+public class ReferenceDataSnapshotTest {
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    long start = System.nanoTime();
+    Map<String, List<String>> exceptionCityMap = ReferenceData.readExceptionCities();
+    Map<String, Map<String, String>> cityAliasMap = ReferenceData.readCityAliases();
+    long parsed = System.nanoTime();
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ReferenceDataSnapshot.write(exceptionCityMap, cityAliasMap, ReferenceData.readZipCodes(), bytes);
+    long loadStart = System.nanoTime();
+    ReferenceDataSnapshot snapshot = ReferenceDataSnapshot.read(new ByteArrayInputStream(bytes.toByteArray()));
+    long loaded = System.nanoTime();
+
+    assertEquals(exceptionCityMap, snapshot.getExceptionCityMap());
+    assertEquals(cityAliasMap, snapshot.getCityAliasMap());
+    System.out.println("  reference data snapshot " + bytes.size() + " bytes: text " + (parsed - start) / 1000000
+      + " ms, snapshot " + (loaded - loadStart) / 1000000 + " ms OK");
+  }
+
+  /**
+   * More than 65536 strings need 24-bit string references.
+   */
+  @Test
+  public void testWideReferences() throws Exception {
+    List<String> cities = new ArrayList<>();
+    for (int i = 0; i < 70000; i++) {
+      cities.add("CITY " + i);
+    }
+    Map<String, List<String>> exceptionCityMap = Collections.singletonMap("NY", cities);
+    Map<String, Map<String, String>> cityAliasMap = Collections.singletonMap("NY", Collections.singletonMap("CITY69999", "CITY 1"));
+    Map<Integer, List<String>> zipCodeMap = Collections.singletonMap(99950, Arrays.asList("CITY 1", "NY", "CITY 69999"));
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ReferenceDataSnapshot.write(exceptionCityMap, cityAliasMap, zipCodeMap, bytes);
+    ReferenceDataSnapshot snapshot = ReferenceDataSnapshot.read(new ByteArrayInputStream(bytes.toByteArray()));
+    assertEquals(3, snapshot.getWidth());
+    assertEquals(exceptionCityMap, snapshot.getExceptionCityMap());
+    assertEquals(cityAliasMap, snapshot.getCityAliasMap());
+    assertEquals("CITY 1", new CityAliasDictionary(snapshot).resolve("CITY 69999", "NY"));
+    ZipCodeIndex index = new ZipCodeIndex(snapshot);
+    assertEquals(99950, index.getZip(index.find("99950")));
+    assertEquals("CITY 69999", index.getAlias(0, 0));
+  }
+
+  @Test
+  public void testInvalidSnapshot() {
+    try {
+      ReferenceDataSnapshot.read(new ByteArrayInputStream("CO -> WHEAT RIDGE".getBytes()));
+      fail("A text file is not a snapshot");
+    } catch (IOException e) {
+    }
+  }
+
+  @Test
+  public void testCityAliasDictionary() throws Exception {
+    Map<String, Map<String, String>> cityAliasMap = ReferenceData.readCityAliases();
+    Path file = Files.createTempFile("reference-data", ".bin");
+    try {
+      try (OutputStream outputStream = Files.newOutputStream(file)) {
+        ReferenceDataSnapshot.write(ReferenceData.readExceptionCities(), cityAliasMap, ReferenceData.readZipCodes(), outputStream);
+      }
+      CityAliasDictionary dictionary = new CityAliasDictionary(ReferenceDataSnapshot.map(file));
+      int count = 0;
+      for (Map.Entry<String, Map<String, String>> state : cityAliasMap.entrySet()) {
+        for (Map.Entry<String, String> alias : state.getValue().entrySet()) {
+          assertEquals(alias.getValue(), dictionary.resolve(alias.getKey(), state.getKey()));
+          count++;
+        }
+      }
+      /**
+       * White space in the query is ignored.
+       */
+      String alias = cityAliasMap.get("NY").keySet().iterator().next();
+      assertEquals(cityAliasMap.get("NY").get(alias), dictionary.resolve(" " + alias.charAt(0) + " \t" + alias.substring(1) + " ", "NY"));
+      assertNull(dictionary.resolve(alias + "X", "NY"));
+      assertNull(dictionary.resolve(alias, "XX"));
+      assertNull(dictionary.resolve("", "NY"));
+      System.out.println("  city alias dictionary " + count + " aliases OK");
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test
+  public void testZipCodeIndex() {
+    Map<Integer, List<String>> zipCodeMap = ReferenceData.readZipCodes();
+    ZipCodeIndex index = ReferenceData.getZipCodeIndex();
+    assertEquals(zipCodeMap.size(), index.size());
+    for (Map.Entry<Integer, List<String>> entry : zipCodeMap.entrySet()) {
+      int record = index.find(entry.getKey());
+      assertEquals(entry.getKey().intValue(), index.getZip(record));
+      assertEquals(entry.getValue().get(0), index.getCity(record));
+      assertEquals(entry.getValue().get(1), index.getState(record));
+      assertEquals(entry.getValue().size() - 2, index.getAliasCount(record));
+      for (int i = 0; i < index.getAliasCount(record); i++) {
+        assertEquals(entry.getValue().get(i + 2), index.getAlias(record, i));
+      }
+    }
+    int record = index.find("00501-1234");
+    assertEquals("HOLTSVILLE", index.getCity(record));
+    assertEquals("I R S SERVICE CENTER", index.getAlias(record, 0));
+    assertEquals(-1, index.find("00000"));
+    assertEquals(-1, index.find("005011"));
+    assertEquals(-1, index.find("0050"));
+    assertEquals(-1, index.find("ABCDE"));
+    /**
+     * The normalizer fills in a missing city and state from the zip code.
+     */
+    Map<AddressComponentKey, String> parsed = new EnumMap<>(AddressComponentKey.class);
+    parsed.put(AddressComponentKey.NUMBER, "1");
+    parsed.put(AddressComponentKey.STREET, "MAIN");
+    parsed.put(AddressComponentKey.ZIP, "00501");
+    Map<AddressComponentKey, String> normalized = new Formatter().normalizeParsedAddress(parsed);
+    assertEquals("Holtsville", normalized.get(AddressComponentKey.CITY));
+    assertEquals("NY", normalized.get(AddressComponentKey.STATE));
+    System.out.println("  zip code index " + index.size() + " zip codes OK");
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ *  Copyright (C) 2015 Caulfield IP Holdings (Caulfield) and/or its affiliates.
+ *  All rights reserved. Use is subject to license terms.
+ *
+ *  Software Code is protected by Caulfield Copyrights. Caulfield hereby reserves
+ *  all rights in and to Caulfield Copyrights and no license is granted under
+ *  Caulfield Copyrights in this Software License Agreement. Caulfield generally
+ *  licenses Caulfield Copyrights for commercialization pursuant to the terms of
+ *  either Caulfield's Standard Software Source Code License Agreement or
+ *  Caulfield's Standard Product License Agreement.
+ *
+ *  A copy of either License Agreement can be obtained on request by email from:
+ *  info@caufield.org.
+ */
+package ch.keybridge.gis.addressparser.us.enumerated;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests of the approximate keyword lookup.
+ *
+ * @author Jesse Caulfield <jesse@caulfield.org>
+ */
+public class FuzzyLookupTest {
+
+  @Test
+  public void testFind() {
+    assertEquals("VIRGINIA", FuzzyLookup.getSTATE().find("VIRGINNIA"));
+    assertEquals("PENNSYLVANIA", FuzzyLookup.getSTATE().find("PENSYLVANIA"));
+    assertEquals("WEST VIRGINIA", FuzzyLookup.getSTATE().find("WEST VIRGINA"));
+    assertEquals("BOULEVARD", FuzzyLookup.getSTREET_TYPE().find("BOULEVRD"));
+    assertEquals("NORTHEAST", FuzzyLookup.getDIRECTION().find("NORHTEAST"));
+    assertEquals("SUITE", FuzzyLookup.getADDRESS_UNIT().find("SUIET"));
+    assertEquals("APARTMENT", FuzzyLookup.getADDRESS_UNIT().find("APARTMNT"));
+    /**
+     * Correct spellings, short words and distant words are not corrected.
+     */
+    assertNull(FuzzyLookup.getSTATE().find("VIRGINIA"));
+    assertNull(FuzzyLookup.getSTATE().find("VA"));
+    assertNull(FuzzyLookup.getSTATE().find("MAIN"));
+    assertNull(FuzzyLookup.getSTATE().find("ALEXANDRIA"));
+    assertEquals(1, FuzzyLookup.distance("SUIET", "SUITE", 2));
+    assertEquals(3, FuzzyLookup.distance("ABCDEF", "ABC", 2));
+    System.out.println("  fuzzy lookup OK");
+  }
+
+  /**
+   * The index finds the same key as a scan of all keys.
+   */
+  @Test
+  public void testFindMatchesScan() {
+    Random random = new Random(24);
+    Map<String, String> lookup = EnumeratedLookup.getSTREET_TYPE();
+    FuzzyLookup index = FuzzyLookup.getSTREET_TYPE();
+    List<String> keys = new ArrayList<>(lookup.keySet());
+    for (int n = 0; n < 5000; n++) {
+      String word = mutate(keys.get(random.nextInt(keys.size())), random);
+      assertEquals(word, scan(lookup, index, word), index.find(word));
+    }
+    System.out.println("  fuzzy lookup matches scan OK");
+  }
+
+  /**
+   * Apply up to three random edits to a word.
+   */
+  private static String mutate(String word, Random random) {
+    StringBuilder sb = new StringBuilder(word);
+    for (int edits = random.nextInt(4); edits > 0 && sb.length() > 1; edits--) {
+      int i = random.nextInt(sb.length() - 1);
+      char c = (char) ('A' + random.nextInt(26));
+      switch (random.nextInt(4)) {
+        case 0:
+          sb.insert(i, c);
+          break;
+        case 1:
+          sb.deleteCharAt(i);
+          break;
+        case 2:
+          sb.setCharAt(i, c);
+          break;
+        default:
+          char t = sb.charAt(i);
+          sb.setCharAt(i, sb.charAt(i + 1));
+          sb.setCharAt(i + 1, t);
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Find the nearest key by computing the distance to every key.
+   */
+  private static String scan(Map<String, String> lookup, FuzzyLookup index, String word) {
+    int maxDistance = FuzzyLookup.getMaxDistance(word.length());
+    if (maxDistance == 0 || index.contains(word)) {
+      return null;
+    }
+    String nearest = null;
+    int nearestDistance = maxDistance + 1;
+    boolean ambiguous = false;
+    for (String key : lookup.keySet()) {
+      int limit = Math.min(maxDistance, FuzzyLookup.getMaxDistance(key.length()));
+      int distance = FuzzyLookup.distance(word, key, limit);
+      if (distance > limit) {
+        continue;
+      }
+      if (distance < nearestDistance) {
+        nearest = key;
+        nearestDistance = distance;
+        ambiguous = false;
+      } else if (distance == nearestDistance) {
+        if (lookup.get(key).equals(lookup.get(nearest))) {
+          nearest = key.compareTo(nearest) < 0 ? key : nearest;
+        } else {
+          ambiguous = true;
+        }
+      }
+    }
+    return ambiguous ? null : nearest;
+  }
+}